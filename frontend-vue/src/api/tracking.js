@@ -51,8 +51,13 @@ export const trackingApi = {
     return handleResponse(request.post('/tracking/batch-delete', { ids }))
   },
 
-  // 批量导入运单
+  // 批量导入运单（返回后台导入任务）
   batchImport(items) {
     return handleResponse(request.post('/tracking/batch-import', { items }))
+  },
+
+  // 查询批量导入任务状态
+  getImportJob(jobId) {
+    return handleResponse(request.get(`/tracking/import-jobs/${jobId}`))
   }
 }
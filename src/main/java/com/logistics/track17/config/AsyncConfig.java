@@ -1,8 +1,16 @@
 package com.logistics.track17.config;
 
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.scheduling.annotation.EnableAsync;
 import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.scheduling.annotation.SchedulingConfigurer;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.scheduling.config.ScheduledTaskRegistrar;
+
+import java.util.concurrent.ThreadPoolExecutor;
 
 /**
  * 异步 + 定时任务配置
@@ -11,7 +19,79 @@ import org.springframework.scheduling.annotation.EnableScheduling;
 @Configuration
 @EnableAsync
 @EnableScheduling
-public class AsyncConfig {
-    // 使用Spring默认的SimpleAsyncTaskExecutor
-    // 如有需要可自定义ThreadPoolTaskExecutor
+public class AsyncConfig implements SchedulingConfigurer {
+    // @Async 使用Spring默认的SimpleAsyncTaskExecutor
+
+    @Value("${scheduling.pool-size:8}")
+    private int schedulingPoolSize;
+
+    /**
+     * 定时任务线程池
+     * WebSocket消息代理已注册了自己的TaskScheduler，Spring Boot不再创建默认调度器，
+     * 这里显式指定@Scheduled使用的线程池，收件箱分发、运单注册、停滞扫描等任务互不阻塞
+     */
+    @Bean("scheduledTaskScheduler")
+    public ThreadPoolTaskScheduler scheduledTaskScheduler() {
+        ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setPoolSize(schedulingPoolSize);
+        scheduler.setThreadNamePrefix("scheduling-");
+        scheduler.setWaitForTasksToCompleteOnShutdown(true);
+        scheduler.setAwaitTerminationSeconds(30);
+        return scheduler;
+    }
+
+    @Override
+    public void configureTasks(ScheduledTaskRegistrar registrar) {
+        registrar.setTaskScheduler(scheduledTaskScheduler());
+    }
+
+    /**
+     * 17Track并发调用线程池（批量导入注册等）
+     * 有界队列 + CallerRunsPolicy：队列满时由提交线程执行，形成背压
+     */
+    @Bean("track17Executor")
+    public ThreadPoolTaskExecutor track17Executor(Track17Config track17Config) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(track17Config.getConcurrency());
+        executor.setMaxPoolSize(track17Config.getConcurrency());
+        executor.setQueueCapacity(200);
+        executor.setThreadNamePrefix("track17-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        return executor;
+    }
+
+    /**
+     * 后台批量导入任务线程池
+     * 同时运行的导入任务数有限，超出队列容量时拒绝提交
+     */
+    @Bean("importJobExecutor")
+    public ThreadPoolTaskExecutor importJobExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(2);
+        executor.setMaxPoolSize(2);
+        executor.setQueueCapacity(10);
+        executor.setThreadNamePrefix("import-job-");
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(60);
+        return executor;
+    }
+
+    /**
+     * Shopify Webhook收件箱处理线程池
+     * 每个任务串行处理一个店铺的一批事件，不同店铺并行
+     */
+    @Bean("webhookExecutor")
+    public ThreadPoolTaskExecutor webhookExecutor(@Value("${shopify.webhook.inbox.workers:4}") int workers) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(workers);
+        executor.setMaxPoolSize(workers);
+        executor.setQueueCapacity(500);
+        executor.setThreadNamePrefix("webhook-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        return executor;
+    }
 }
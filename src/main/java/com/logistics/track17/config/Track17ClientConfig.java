@@ -0,0 +1,39 @@
+package com.logistics.track17.config;
+
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 17Track HTTP客户端配置
+ * 共享连接池，优先通过ALPN协商HTTP/2（同一连接多路复用），服务端不支持时回退HTTP/1.1；
+ * 异步请求的在途数量由Dispatcher按并发配置限制
+ */
+@Configuration
+public class Track17ClientConfig {
+
+    @Bean
+    public OkHttpClient track17HttpClient(Track17Config config) {
+        long timeoutMillis = config.getTimeout() != null ? config.getTimeout() : 10000;
+
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequests(Math.max(1, config.getConcurrency()) * 2);
+        dispatcher.setMaxRequestsPerHost(Math.max(1, config.getConcurrency()));
+
+        return new OkHttpClient.Builder()
+                .connectionPool(new ConnectionPool(config.getMaxIdleConnections(),
+                        config.getKeepAliveSeconds(), TimeUnit.SECONDS))
+                .dispatcher(dispatcher)
+                .protocols(Arrays.asList(Protocol.HTTP_2, Protocol.HTTP_1_1))
+                .connectTimeout(timeoutMillis, TimeUnit.MILLISECONDS)
+                .readTimeout(timeoutMillis, TimeUnit.MILLISECONDS)
+                .writeTimeout(timeoutMillis, TimeUnit.MILLISECONDS)
+                .build();
+    }
+}
@@ -16,4 +16,64 @@ public class Track17Config {
     private String registerEndpoint;
     private String queryEndpoint;
     private Integer timeout;
+
+    /**
+     * Webhook推送签名密钥（17Track后台配置的Security Key）
+     */
+    private String webhookSecret;
+
+    /**
+     * 每秒最多请求数（按17Track套餐限额配置）
+     */
+    private Double rateLimit = 3.0;
+
+    /**
+     * 并发调用17Track的最大线程数
+     */
+    private Integer concurrency = 4;
+
+    /**
+     * 连接池最大空闲连接数
+     */
+    private Integer maxIdleConnections = 8;
+
+    /**
+     * 空闲连接保活时间（秒）
+     */
+    private Integer keepAliveSeconds = 300;
+
+    /**
+     * 429/5xx及网络异常时的最大重试次数
+     */
+    private Integer maxRetries = 2;
+
+    /**
+     * 重试退避基准时间（毫秒），按指数增长并加随机抖动
+     */
+    private Long retryBaseDelayMillis = 500L;
+
+    /**
+     * 重试退避最大时间（毫秒）
+     */
+    private Long retryMaxDelayMillis = 10000L;
+
+    /**
+     * 连续失败多少次后熔断
+     */
+    private Integer circuitFailureThreshold = 5;
+
+    /**
+     * 熔断持续时间（秒）
+     */
+    private Long circuitOpenSeconds = 60L;
+
+    /**
+     * 每日注册额度上限（0表示不限制）
+     */
+    private Long dailyRegisterQuota = 0L;
+
+    /**
+     * 每日查询运单数上限（0表示不限制）
+     */
+    private Long dailyQueryQuota = 0L;
 }
@@ -1,7 +1,9 @@
 package com.logistics.track17.controller;
 
+import com.logistics.track17.dto.CarrierLanePerformanceDTO;
 import com.logistics.track17.dto.Result;
 import com.logistics.track17.entity.Carrier;
+import com.logistics.track17.service.CarrierPerformanceService;
 import com.logistics.track17.service.CarrierService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.web.bind.annotation.*;
@@ -17,9 +19,12 @@ import java.util.List;
 public class CarrierController {
 
     private final CarrierService carrierService;
+    private final CarrierPerformanceService carrierPerformanceService;
 
-    public CarrierController(CarrierService carrierService) {
+    public CarrierController(CarrierService carrierService,
+            CarrierPerformanceService carrierPerformanceService) {
         this.carrierService = carrierService;
+        this.carrierPerformanceService = carrierPerformanceService;
     }
 
     /**
@@ -39,4 +44,19 @@ public class CarrierController {
         List<Carrier> carriers = carrierService.getAll();
         return Result.success(carriers);
     }
+
+    /**
+     * 承运商线路时效（签收时效分位数、异常率）
+     *
+     * @param months 统计最近几个自然月（含当月）
+     */
+    @GetMapping("/performance")
+    public Result<List<CarrierLanePerformanceDTO>> getPerformance(
+            @RequestParam(defaultValue = "3") Integer months,
+            @RequestParam(required = false) String carrierCode,
+            @RequestParam(required = false) String originCountry,
+            @RequestParam(required = false) String destinationCountry) {
+        return Result.success(carrierPerformanceService.getLanePerformance(months, carrierCode,
+                originCountry, destinationCountry));
+    }
 }
@@ -8,6 +8,7 @@ import com.logistics.track17.entity.ProductTemplate;
 import com.logistics.track17.entity.Shop;
 import com.logistics.track17.mapper.ShopMapper;
 import com.logistics.track17.service.ProductTemplateService;
+import com.logistics.track17.service.ShopDomainCacheService;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import lombok.RequiredArgsConstructor;
@@ -24,6 +25,7 @@ public class ProductTemplateController {
 
     private final ProductTemplateService productTemplateService;
     private final ShopMapper shopMapper;
+    private final ShopDomainCacheService shopDomainCacheService;
 
     @GetMapping("/list")
     @ApiOperation("分页获取产品模板列表")
@@ -79,6 +81,7 @@ public class ProductTemplateController {
         }
         shopMapper.clearDevStoreFlag();
         shopMapper.setDevStoreFlag(shopId);
+        shopDomainCacheService.evictAll();
         return Result.success(true);
     }
 }
@@ -2,12 +2,17 @@ package com.logistics.track17.controller;
 
 import com.logistics.track17.dto.DashboardStatsResponse;
 import com.logistics.track17.dto.Result;
+import com.logistics.track17.dto.TrendStatsResponse;
 import com.logistics.track17.service.StatsService;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.time.LocalDate;
+
 /**
  * 统计控制器
  */
@@ -30,4 +35,21 @@ public class StatsController {
         DashboardStatsResponse response = statsService.getDashboardStats();
         return Result.success(response);
     }
+
+    /**
+     * 获取订单/销售额趋势
+     *
+     * @param shopId      店铺ID（不传为全部店铺）
+     * @param granularity day / week
+     * @param startDate   开始日期 yyyy-MM-dd（含）
+     * @param endDate     结束日期 yyyy-MM-dd（不含）
+     */
+    @GetMapping("/trend")
+    public Result<TrendStatsResponse> getTrend(
+            @RequestParam(required = false) Long shopId,
+            @RequestParam(defaultValue = "day") String granularity,
+            @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM-dd") LocalDate startDate,
+            @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM-dd") LocalDate endDate) {
+        return Result.success(statsService.getTrend(shopId, granularity, startDate, endDate));
+    }
 }
@@ -0,0 +1,72 @@
+package com.logistics.track17.controller;
+
+import com.alibaba.fastjson.JSON;
+import com.logistics.track17.dto.Track17WebhookPayload;
+import com.logistics.track17.service.Track17Service;
+import com.logistics.track17.service.TrackingService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+/**
+ * 17Track Webhook 控制器
+ * 接收17Track推送的运单状态更新，替代定时轮询
+ */
+@Slf4j
+@RestController
+@RequestMapping("/webhooks/17track")
+public class Track17WebhookController {
+
+    private final Track17Service track17Service;
+    private final TrackingService trackingService;
+
+    public Track17WebhookController(Track17Service track17Service, TrackingService trackingService) {
+        this.track17Service = track17Service;
+        this.trackingService = trackingService;
+    }
+
+    /**
+     * 处理运单推送
+     */
+    @PostMapping
+    public ResponseEntity<Void> handlePush(
+            @RequestBody String payload,
+            @RequestHeader(value = "sign", required = false) String sign) {
+
+        // 验证webhook签名
+        if (!track17Service.validateWebhookSignature(sign, payload)) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+
+        Track17WebhookPayload push;
+        try {
+            push = JSON.parseObject(payload, Track17WebhookPayload.class);
+        } catch (Exception e) {
+            log.warn("Invalid 17Track webhook payload: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        }
+
+        if (push == null || push.getData() == null || push.getData().getNumber() == null) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        String number = push.getData().getNumber();
+        log.info("Received 17Track webhook: {} for {}", push.getEvent(), number);
+
+        if (!Track17WebhookPayload.EVENT_TRACKING_UPDATED.equals(push.getEvent())) {
+            // TRACKING_STOPPED等事件仅记录，运单仍由定时同步兜底
+            return ResponseEntity.ok().build();
+        }
+
+        try {
+            if (!trackingService.applyPushUpdate(push.getData())) {
+                log.warn("Tracking number not found for 17Track push: {}", number);
+            }
+            return ResponseEntity.ok().build(); // 运单不存在也返回200避免17Track重试
+        } catch (Exception e) {
+            log.error("Error processing 17Track webhook for: {}", number, e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+}
@@ -2,6 +2,7 @@ package com.logistics.track17.controller;
 
 import com.logistics.track17.annotation.RequireAuth;
 import com.logistics.track17.dto.*;
+import com.logistics.track17.service.TrackingImportJobService;
 import com.logistics.track17.service.TrackingService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.validation.annotation.Validated;
@@ -18,9 +19,12 @@ import java.util.List;
 public class TrackingController {
 
     private final TrackingService trackingService;
+    private final TrackingImportJobService trackingImportJobService;
 
-    public TrackingController(TrackingService trackingService) {
+    public TrackingController(TrackingService trackingService,
+                              TrackingImportJobService trackingImportJobService) {
         this.trackingService = trackingService;
+        this.trackingImportJobService = trackingImportJobService;
     }
 
     /**
@@ -35,6 +39,7 @@ public class TrackingController {
 
     /**
      * 获取运单列表
+     * 传入cursor参数（首页传空字符串）时使用游标分页，返回nextCursor；includeTotal=true时首页返回总数
      */
     @GetMapping
     @RequireAuth(permissions = {"tracking:view"})
@@ -46,7 +51,14 @@ public class TrackingController {
             @RequestParam(required = false) String startDate,
             @RequestParam(required = false) String endDate,
             @RequestParam(required = false, defaultValue = "1") Integer page,
-            @RequestParam(required = false, defaultValue = "20") Integer pageSize) {
+            @RequestParam(required = false, defaultValue = "20") Integer pageSize,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false, defaultValue = "false") Boolean includeTotal) {
+
+        if (cursor != null) {
+            return Result.success(trackingService.getListByCursor(
+                    keyword, shopId, status, carrierCode, startDate, endDate, cursor, pageSize, includeTotal));
+        }
 
         PageResult<TrackingResponse> result = trackingService.getList(
                 keyword, shopId, status, carrierCode, startDate, endDate, page, pageSize
@@ -117,12 +129,23 @@ public class TrackingController {
     }
 
     /**
-     * 批量导入运单
+     * 批量导入运单（后台执行，立即返回任务ID）
+     * 进度推送到 /topic/import-jobs/{jobId}
      */
     @PostMapping("/batch-import")
     @RequireAuth(permissions = {"tracking:manage"})
-    public Result<BatchImportResult> batchImport(@Validated @RequestBody BatchImportRequest request) {
-        BatchImportResult result = trackingService.batchImport(request);
-        return Result.success(result.getMessage(), result);
+    public Result<ImportJobStatus> batchImport(@Validated @RequestBody BatchImportRequest request) {
+        ImportJobStatus status = trackingImportJobService.submit(request);
+        return Result.success("导入任务已提交", status);
+    }
+
+    /**
+     * 查询批量导入任务状态
+     */
+    @GetMapping("/import-jobs/{jobId}")
+    @RequireAuth(permissions = {"tracking:manage"})
+    public Result<ImportJobStatus> getImportJob(@PathVariable String jobId) {
+        ImportJobStatus status = trackingImportJobService.getStatus(jobId);
+        return Result.success(status);
     }
 }
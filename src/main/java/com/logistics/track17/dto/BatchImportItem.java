@@ -16,4 +16,8 @@ public class BatchImportItem {
     private String carrierCode;  // 承运商代码（可选，为空时自动识别）
 
     private String remarks;
+
+    private Long orderId;  // 关联订单ID（可选）
+
+    private String source;  // 来源（可选，默认 batch_import）
 }
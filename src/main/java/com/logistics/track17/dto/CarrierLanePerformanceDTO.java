@@ -0,0 +1,23 @@
+package com.logistics.track17.dto;
+
+import lombok.Data;
+
+import java.math.BigDecimal;
+
+/**
+ * 承运商线路时效
+ */
+@Data
+public class CarrierLanePerformanceDTO {
+    private String carrierCode;
+    private String originCountry;
+    private String destinationCountry;
+    private Long deliveredCount;            // 签收运单数
+    private Long exceptionCount;            // 异常运单数
+    private BigDecimal exceptionRate;       // 异常率 = 异常数 / (签收数 + 异常数)
+    private Long transitSampleCount;        // 参与时效统计的签收运单数
+    private BigDecimal avgTransitDays;      // 平均运输天数
+    private Integer p50TransitDays;         // 运输天数中位数
+    private Integer p90TransitDays;
+    private Integer p99TransitDays;
+}
@@ -0,0 +1,23 @@
+package com.logistics.track17.dto;
+
+import lombok.Data;
+
+/**
+ * 批量导入任务状态（同时用于状态查询接口和WebSocket进度推送）
+ */
+@Data
+public class ImportJobStatus {
+
+    public static final String STATUS_RUNNING = "RUNNING";
+    public static final String STATUS_COMPLETED = "COMPLETED";
+    public static final String STATUS_FAILED = "FAILED";
+
+    private String jobId;
+    private String status;       // RUNNING / COMPLETED / FAILED
+    private int total;           // 总数
+    private int processed;       // 已处理数
+    private int success;         // 成功数
+    private int failed;          // 失败数
+    private Long etaSeconds;     // 预计剩余时间（秒）
+    private String message;      // 消息
+}
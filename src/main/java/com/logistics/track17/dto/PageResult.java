@@ -19,6 +19,11 @@ public class PageResult<T> {
     private Integer pageSize;
     private Integer totalPages;
 
+    /** 游标分页：下一页游标，没有更多数据时为空 */
+    private String nextCursor;
+    /** 游标分页：是否还有更多数据 */
+    private Boolean hasMore;
+
     public PageResult() {
     }
 
@@ -33,4 +38,20 @@ public class PageResult<T> {
     public static <T> PageResult<T> of(List<T> list, Long total, Integer page, Integer pageSize) {
         return new PageResult<>(list, total, page, pageSize);
     }
+
+    /**
+     * 游标分页结果（total为空表示未统计总数）
+     */
+    public static <T> PageResult<T> ofCursor(List<T> list, Integer pageSize, String nextCursor, Long total) {
+        PageResult<T> result = new PageResult<>();
+        result.setList(list);
+        result.setPageSize(pageSize);
+        result.setNextCursor(nextCursor);
+        result.setHasMore(nextCursor != null);
+        if (total != null) {
+            result.setTotal(total);
+            result.setTotalPages((int) Math.ceil((double) total / pageSize));
+        }
+        return result;
+    }
 }
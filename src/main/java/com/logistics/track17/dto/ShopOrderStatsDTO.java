@@ -0,0 +1,17 @@
+package com.logistics.track17.dto;
+
+import lombok.Data;
+
+import java.math.BigDecimal;
+
+/**
+ * 按店铺分组的订单统计（全部订单 + 指定时间段内订单）
+ */
+@Data
+public class ShopOrderStatsDTO {
+    private Long shopId;
+    private Long orderCount;
+    private BigDecimal revenue;
+    private Long periodOrderCount;
+    private BigDecimal periodRevenue;
+}
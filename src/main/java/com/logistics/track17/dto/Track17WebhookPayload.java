@@ -0,0 +1,17 @@
+package com.logistics.track17.dto;
+
+import lombok.Data;
+
+/**
+ * 17Track Webhook推送数据
+ * data 与V2查询接口的 accepted 项结构一致
+ */
+@Data
+public class Track17WebhookPayload {
+
+    public static final String EVENT_TRACKING_UPDATED = "TRACKING_UPDATED";
+    public static final String EVENT_TRACKING_STOPPED = "TRACKING_STOPPED";
+
+    private String event;  // TRACKING_UPDATED / TRACKING_STOPPED
+    private Track17V2Response.AcceptedItem data;
+}
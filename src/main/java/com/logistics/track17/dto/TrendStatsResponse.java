@@ -0,0 +1,78 @@
+package com.logistics.track17.dto;
+
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * 订单/销售额趋势响应
+ * 金额按币种分开汇总，不做汇率换算；每条序列的points与buckets一一对应（无订单的时间桶补0）
+ */
+@Data
+public class TrendStatsResponse {
+
+    /**
+     * 时间粒度：day / week
+     */
+    private String granularity;
+
+    /**
+     * 统计开始日期（含）
+     */
+    private String startDate;
+
+    /**
+     * 统计结束日期（不含）
+     */
+    private String endDate;
+
+    /**
+     * 时间桶起始日期列表（按周时为周一）
+     */
+    private List<String> buckets;
+
+    /**
+     * 全部店铺按币种汇总
+     */
+    private List<CurrencySeries> totals;
+
+    /**
+     * 分店铺趋势
+     */
+    private List<ShopTrend> shops;
+
+    /**
+     * 店铺趋势
+     */
+    @Data
+    public static class ShopTrend {
+        private Long shopId;
+        private String shopName;
+        private String shopDomain;
+        private String currency;            // 店铺币种（Shop.currency）
+        private Long orderCount;            // 统计范围内订单数（全部币种）
+        private List<CurrencySeries> series;
+    }
+
+    /**
+     * 单一币种的趋势序列
+     */
+    @Data
+    public static class CurrencySeries {
+        private String currency;
+        private Long orderCount;
+        private BigDecimal revenue;
+        private List<Point> points;
+    }
+
+    /**
+     * 时间桶数据点
+     */
+    @Data
+    public static class Point {
+        private String date;
+        private Long orderCount;
+        private BigDecimal revenue;
+    }
+}
@@ -0,0 +1,21 @@
+package com.logistics.track17.entity;
+
+import lombok.Data;
+
+import java.time.LocalDate;
+
+/**
+ * 承运商线路时效统计实体（按承运商、始发国、目的国、月份）
+ * 增量维护时同一实体也用于表示差值
+ */
+@Data
+public class CarrierLaneStats {
+    private String carrierCode;
+    private String originCountry;
+    private String destinationCountry;
+    private LocalDate statMonth;            // 统计月份（当月1日）
+    private Integer deliveredCount;         // 签收运单数
+    private Integer exceptionCount;         // 异常运单数
+    private Integer transitSampleCount;     // 有运输天数的签收运单数
+    private Long transitDaysTotal;          // 运输天数合计
+}
@@ -0,0 +1,18 @@
+package com.logistics.track17.entity;
+
+import lombok.Data;
+
+import java.time.LocalDate;
+
+/**
+ * 承运商线路运输天数直方图桶
+ */
+@Data
+public class CarrierLaneTransitBucket {
+    private String carrierCode;
+    private String originCountry;
+    private String destinationCountry;
+    private LocalDate statMonth;            // 统计月份（当月1日）
+    private Integer transitDays;            // 运输天数（上限桶表示该天数及以上）
+    private Integer parcelCount;            // 运单数
+}
@@ -44,4 +44,5 @@ public class Order {
 
     // 原始数据
     private String rawData;
+    private byte[] rawDataGzip;  // 开启压缩时保存gzip压缩的原始报文（此时rawData为空）
 }
@@ -0,0 +1,23 @@
+package com.logistics.track17.entity;
+
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * 店铺每日订单汇总实体（按店铺、下单日期、币种）
+ * 增量维护时同一实体也用于表示差值（字段可为负数）
+ */
+@Data
+public class ShopDailyOrderStats {
+    private Long shopId;
+    private LocalDate statDate;             // 下单日期
+    private String currency;                // 币种
+    private Integer orderCount;             // 订单数
+    private BigDecimal revenue;             // 订单总金额
+    private Integer paidOrderCount;         // 已支付订单数
+    private BigDecimal paidRevenue;         // 已支付订单金额
+    private Integer refundedOrderCount;     // 已退款/作废订单数
+    private BigDecimal refundedRevenue;     // 已退款/作废订单金额
+}
@@ -0,0 +1,26 @@
+package com.logistics.track17.entity;
+
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * Shopify发货运单待注册记录实体
+ */
+@Data
+public class ShopifyTrackingRegistration {
+
+    public static final String STATUS_PENDING = "PENDING";
+    public static final String STATUS_DONE = "DONE";
+    public static final String STATUS_DEAD = "DEAD";
+
+    private Long id;
+    private String trackingNumber;      // 运单号
+    private Long orderId;               // 关联订单ID
+    private String status;              // PENDING/DONE/DEAD
+    private Integer attempts;           // 已注册次数
+    private LocalDateTime nextAttemptAt; // 下次可注册时间
+    private String lastError;           // 最近一次注册错误
+    private LocalDateTime createdAt;
+    private LocalDateTime processedAt;
+}
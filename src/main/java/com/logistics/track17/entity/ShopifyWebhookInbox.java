@@ -0,0 +1,28 @@
+package com.logistics.track17.entity;
+
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * Shopify Webhook收件箱事件实体
+ */
+@Data
+public class ShopifyWebhookInbox {
+
+    public static final String STATUS_PENDING = "PENDING";
+    public static final String STATUS_DONE = "DONE";
+    public static final String STATUS_DEAD = "DEAD";
+
+    private Long id;
+    private String webhookId;           // X-Shopify-Webhook-Id
+    private String topic;               // Webhook主题，如 orders/create
+    private String shopDomain;          // 店铺域名
+    private String payload;             // 原始报文
+    private String status;              // PENDING/DONE/DEAD
+    private Integer attempts;           // 已处理次数
+    private LocalDateTime nextAttemptAt; // 下次可处理时间
+    private String lastError;           // 最近一次处理错误
+    private LocalDateTime receivedAt;
+    private LocalDateTime processedAt;
+}
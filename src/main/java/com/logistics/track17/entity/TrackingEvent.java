@@ -22,5 +22,6 @@ public class TrackingEvent {
     private String stage;               // 阶段 InfoReceived/InTransit/Delivered/Exception等
     private String subStatus;           // 子状态
     private String timeIso;             // ISO时间字符串
+    private String eventFingerprint;    // 事件指纹（时间+地点+描述的MD5，同一运单内唯一）
     private LocalDateTime createdAt;
 }
@@ -30,6 +30,7 @@ public class TrackingNumber {
     private LocalDateTime deliveredTime;// 签收时间
     private LocalDateTime lastSyncAt;
     private LocalDateTime nextSyncAt;
+    private String syncHash; // 同步内容摘要（最新状态+最新事件+事件数），未变化时跳过写入
     private String rawStatus; // JSON格式存储原始状态
     private String destinationCountry; // 目的国家
     private String originCountry; // 始发国家
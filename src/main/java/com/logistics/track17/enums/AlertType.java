@@ -10,6 +10,7 @@ public enum AlertType {
     PAYMENT_HOLD("PAYMENT_HOLD", "资金冻结", "CRITICAL"),
     APP_UNINSTALLED("APP_UNINSTALLED", "应用卸载", "HIGH"),
     SHOP_ALERT("SHOP_ALERT", "店铺管理提示", "MEDIUM"),
+    STUCK_PARCEL("STUCK_PARCEL", "运单停滞", "HIGH"),
     DAILY_SUMMARY("DAILY_SUMMARY", "每日汇总", "INFO"),
     MONTHLY_SUMMARY("MONTHLY_SUMMARY", "月度汇总", "INFO"),
     QUARTERLY_SUMMARY("QUARTERLY_SUMMARY", "季度汇总", "INFO"),
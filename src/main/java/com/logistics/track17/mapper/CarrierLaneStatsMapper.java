@@ -0,0 +1,41 @@
+package com.logistics.track17.mapper;
+
+import com.logistics.track17.entity.CarrierLaneStats;
+import com.logistics.track17.entity.CarrierLaneTransitBucket;
+import org.apache.ibatis.annotations.Param;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * 承运商线路时效统计Mapper
+ */
+public interface CarrierLaneStatsMapper {
+
+    /**
+     * 累加签收/异常数差值（不存在的行按差值插入）
+     */
+    int applyStatsDeltas(@Param("list") List<CarrierLaneStats> deltas);
+
+    /**
+     * 累加直方图桶差值（不存在的行按差值插入）
+     */
+    int applyHistogramDeltas(@Param("list") List<CarrierLaneTransitBucket> deltas);
+
+    /**
+     * 按线路汇总 startMonth 起各月的统计（statMonth不返回）
+     * 筛选条件为空时不限制
+     */
+    List<CarrierLaneStats> selectLaneTotals(@Param("startMonth") LocalDate startMonth,
+            @Param("carrierCode") String carrierCode,
+            @Param("originCountry") String originCountry,
+            @Param("destinationCountry") String destinationCountry);
+
+    /**
+     * 按线路合并 startMonth 起各月的直方图（statMonth不返回）
+     */
+    List<CarrierLaneTransitBucket> selectLaneHistogram(@Param("startMonth") LocalDate startMonth,
+            @Param("carrierCode") String carrierCode,
+            @Param("originCountry") String originCountry,
+            @Param("destinationCountry") String destinationCountry);
+}
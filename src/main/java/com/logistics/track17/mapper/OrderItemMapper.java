@@ -16,6 +16,11 @@ public interface OrderItemMapper {
      */
     void batchInsert(@Param("items") List<OrderItem> items);
 
+    /**
+     * 删除订单的商品明细
+     */
+    int deleteByOrderId(@Param("orderId") Long orderId);
+
     /**
      * 根据订单ID查询商品列表
      */
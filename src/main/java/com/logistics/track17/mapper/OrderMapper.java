@@ -12,9 +12,11 @@ import java.util.List;
 public interface OrderMapper {
 
     /**
-     * 插入订单
+     * 插入或更新订单（INSERT ... ON DUPLICATE KEY UPDATE），回填订单ID
+     *
+     * @return 影响行数（连接未开启 useAffectedRows 时更新返回的是匹配行数，不能据此区分新增和更新）
      */
-    void insert(Order order);
+    int upsert(Order order);
 
     /**
      * 根据ID查询
@@ -26,6 +28,11 @@ public interface OrderMapper {
      */
     Order selectByShopifyOrderId(@Param("shopId") Long shopId, @Param("shopifyOrderId") Long shopifyOrderId);
 
+    /**
+     * 查询订单写入前的汇总相关字段（ID、下单时间、币种、金额、支付状态），订单不存在时返回null
+     */
+    Order selectRollupSnapshot(@Param("shopId") Long shopId, @Param("shopifyOrderId") Long shopifyOrderId);
+
     /**
      * 查询订单列表
      */
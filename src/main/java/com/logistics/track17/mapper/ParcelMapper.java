@@ -3,6 +3,8 @@ package com.logistics.track17.mapper;
 import com.logistics.track17.entity.Parcel;
 import org.apache.ibatis.annotations.Param;
 
+import java.util.List;
+
 /**
  * 包裹Mapper
  */
@@ -13,6 +15,11 @@ public interface ParcelMapper {
      */
     int insert(Parcel parcel);
 
+    /**
+     * 批量插入包裹（回填自增ID）
+     */
+    int insertBatch(@Param("list") List<Parcel> parcels);
+
     /**
      * 根据ID查询包裹
      */
@@ -22,4 +29,9 @@ public interface ParcelMapper {
      * 根据订单ID查询包裹
      */
     Parcel selectByOrderId(@Param("orderId") Long orderId);
+
+    /**
+     * 根据订单ID批量查询包裹
+     */
+    List<Parcel> selectByOrderIds(@Param("orderIds") List<Long> orderIds);
 }
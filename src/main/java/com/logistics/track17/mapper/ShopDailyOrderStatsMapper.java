@@ -0,0 +1,53 @@
+package com.logistics.track17.mapper;
+
+import com.logistics.track17.dto.ShopOrderStatsDTO;
+import com.logistics.track17.entity.ShopDailyOrderStats;
+import org.apache.ibatis.annotations.Param;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * 店铺每日订单汇总Mapper
+ */
+public interface ShopDailyOrderStatsMapper {
+
+    /**
+     * 累加差值（不存在的行按差值插入）
+     */
+    int applyDeltas(@Param("list") List<ShopDailyOrderStats> deltas);
+
+    /**
+     * 删除指定日期的汇总
+     */
+    int deleteByDate(@Param("statDate") LocalDate statDate);
+
+    /**
+     * 从orders表重算指定日期的汇总
+     */
+    int rebuildByDate(@Param("statDate") LocalDate statDate);
+
+    /**
+     * 按店铺分组统计全部订单，以及 [periodStart, periodEnd) 内的订单
+     */
+    List<ShopOrderStatsDTO> selectShopOrderStats(@Param("periodStart") LocalDate periodStart,
+            @Param("periodEnd") LocalDate periodEnd);
+
+    /**
+     * 按店铺分组统计 [startDate, endDate) 内的订单数和销售额
+     */
+    List<ShopOrderStatsDTO> selectShopTotals(@Param("startDate") LocalDate startDate,
+            @Param("endDate") LocalDate endDate);
+
+    /**
+     * 按店铺、时间桶、币种汇总 [startDate, endDate) 内的订单数和销售额
+     * 返回行的statDate为时间桶起始日期（按天为当天，按周为周一）
+     *
+     * @param shopId 店铺ID（为空时统计全部店铺）
+     * @param weekly true按周汇总，false按天汇总
+     */
+    List<ShopDailyOrderStats> selectTrend(@Param("shopId") Long shopId,
+            @Param("startDate") LocalDate startDate,
+            @Param("endDate") LocalDate endDate,
+            @Param("weekly") boolean weekly);
+}
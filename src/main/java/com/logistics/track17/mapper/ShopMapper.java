@@ -25,6 +25,11 @@ public interface ShopMapper {
      */
     Shop selectById(@Param("id") Long id);
 
+    /**
+     * 根据ID批量查询店铺
+     */
+    List<Shop> selectByIds(@Param("ids") List<Long> ids);
+
     /**
      * 根据店铺域名查询
      */
@@ -47,6 +52,11 @@ public interface ShopMapper {
      */
     int update(Shop shop);
 
+    /**
+     * 批量更新最后同步时间（只使用id和lastSyncTime）
+     */
+    int updateLastSyncTimeBatch(@Param("list") List<Shop> shops);
+
     /**
      * 删除店铺
      */
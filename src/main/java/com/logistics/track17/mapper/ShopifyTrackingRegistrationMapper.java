@@ -0,0 +1,45 @@
+package com.logistics.track17.mapper;
+
+import com.logistics.track17.entity.ShopifyTrackingRegistration;
+import org.apache.ibatis.annotations.Param;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Shopify发货运单待注册Mapper
+ */
+public interface ShopifyTrackingRegistrationMapper {
+
+    /**
+     * 写入待注册运单；运单号已存在时忽略，已是DEAD的重新置为PENDING
+     */
+    int upsertPending(ShopifyTrackingRegistration registration);
+
+    /**
+     * 按ID顺序查询已到注册时间的PENDING记录
+     */
+    List<ShopifyTrackingRegistration> selectDue(@Param("now") LocalDateTime now, @Param("limit") int limit);
+
+    /**
+     * 认领待注册记录：仍为PENDING且已到注册时间时把 next_attempt_at 推后到租期结束
+     *
+     * @return 1表示认领成功，0表示已被其他节点认领或已处理
+     */
+    int claim(@Param("id") Long id, @Param("now") LocalDateTime now, @Param("leaseUntil") LocalDateTime leaseUntil);
+
+    /**
+     * 批量标记为已注册
+     */
+    int markDone(@Param("ids") List<Long> ids, @Param("processedAt") LocalDateTime processedAt);
+
+    /**
+     * 记录注册失败（attempts、status、next_attempt_at、last_error）
+     */
+    int updateFailure(ShopifyTrackingRegistration registration);
+
+    /**
+     * 清理指定时间之前已注册的记录（单次最多删除limit条）
+     */
+    int deleteProcessedBefore(@Param("before") LocalDateTime before, @Param("limit") int limit);
+}
@@ -0,0 +1,53 @@
+package com.logistics.track17.mapper;
+
+import com.logistics.track17.entity.ShopifyWebhookInbox;
+import org.apache.ibatis.annotations.Param;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Shopify Webhook收件箱Mapper
+ */
+public interface ShopifyWebhookInboxMapper {
+
+    /**
+     * 写入事件，webhook_id已存在（重复投递）时忽略
+     *
+     * @return 1表示新写入，0表示重复
+     */
+    int insertIgnore(ShopifyWebhookInbox event);
+
+    /**
+     * 按ID顺序查询可处理的事件：PENDING且已到处理时间，
+     * 并且同一店铺没有更早的、仍在退避等待或已被认领的事件（保证店铺内顺序）
+     */
+    List<ShopifyWebhookInbox> selectProcessable(@Param("now") LocalDateTime now, @Param("limit") int limit);
+
+    /**
+     * 认领事件：仍为PENDING且已到处理时间时把 next_attempt_at 推后到租期结束
+     *
+     * @return 1表示认领成功，0表示已被其他节点认领或已处理
+     */
+    int claim(@Param("id") Long id, @Param("now") LocalDateTime now, @Param("leaseUntil") LocalDateTime leaseUntil);
+
+    /**
+     * 释放认领但未处理的事件（next_attempt_at 恢复为now）
+     */
+    int releaseClaims(@Param("ids") List<Long> ids, @Param("now") LocalDateTime now);
+
+    /**
+     * 批量标记为已处理
+     */
+    int markDone(@Param("ids") List<Long> ids, @Param("processedAt") LocalDateTime processedAt);
+
+    /**
+     * 记录处理失败（attempts、status、next_attempt_at、last_error）
+     */
+    int updateFailure(ShopifyWebhookInbox event);
+
+    /**
+     * 清理指定时间之前已处理的事件（单次最多删除limit条）
+     */
+    int deleteProcessedBefore(@Param("before") LocalDateTime before, @Param("limit") int limit);
+}
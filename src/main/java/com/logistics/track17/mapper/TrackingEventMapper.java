@@ -20,6 +20,18 @@ public interface TrackingEventMapper {
      */
     int insertBatch(@Param("events") List<TrackingEvent> events);
 
+    /**
+     * 批量插入事件，指纹已存在的事件忽略
+     *
+     * @return 实际新增的事件数
+     */
+    int insertIgnoreBatch(@Param("events") List<TrackingEvent> events);
+
+    /**
+     * 查询多个运单已有的事件指纹（仅返回tracking_id和event_fingerprint）
+     */
+    List<TrackingEvent> selectFingerprintsByTrackingIds(@Param("trackingIds") List<Long> trackingIds);
+
     /**
      * 根据运单ID查询事件列表
      */
@@ -3,6 +3,7 @@ package com.logistics.track17.mapper;
 import com.logistics.track17.entity.TrackingNumber;
 import org.apache.ibatis.annotations.Param;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 /**
@@ -47,6 +48,23 @@ public interface TrackingNumberMapper {
                                     @Param("offset") Integer offset,
                                     @Param("pageSize") Integer pageSize);
 
+    /**
+     * 游标分页查询运单列表（按updated_at DESC, id DESC排序）
+     *
+     * @param cursorUpdatedAt 上一页最后一条的更新时间，为空表示第一页
+     * @param cursorId        上一页最后一条的ID
+     * @param limit           查询条数
+     */
+    List<TrackingNumber> selectListByCursor(@Param("keyword") String keyword,
+                                            @Param("shopId") Long shopId,
+                                            @Param("status") String status,
+                                            @Param("carrierCode") String carrierCode,
+                                            @Param("startDate") String startDate,
+                                            @Param("endDate") String endDate,
+                                            @Param("cursorUpdatedAt") LocalDateTime cursorUpdatedAt,
+                                            @Param("cursorId") Long cursorId,
+                                            @Param("limit") Integer limit);
+
     /**
      * 统计运单数量
      */
@@ -62,6 +80,55 @@ public interface TrackingNumberMapper {
      */
     int update(TrackingNumber trackingNumber);
 
+    /**
+     * 批量写回同步结果（单条多行UPDATE，用于批量同步）
+     */
+    int updateSyncResultBatch(@Param("list") List<TrackingNumber> trackingNumbers);
+
+    /**
+     * 抢占状态变化：当前状态不在excludedStatuses中时改为trackStatus（不更新updated_at）
+     * 并发同步同一运单时只有一个事务返回1，用于保证状态变化只统计一次
+     *
+     * @return 1表示本次完成了状态变化，0表示已被其他同步抢先
+     */
+    int claimTrackStatus(@Param("id") Long id, @Param("trackStatus") String trackStatus,
+                         @Param("excludedStatuses") List<String> excludedStatuses);
+
+    /**
+     * 批量更新最后同步时间和下次同步时间（运单无变化时使用）
+     */
+    int updateSyncScheduleBatch(@Param("list") List<TrackingNumber> trackingNumbers);
+
+    /**
+     * 批量设置下次同步时间
+     */
+    int updateNextSyncAtBatch(@Param("ids") List<Long> ids, @Param("nextSyncAt") LocalDateTime nextSyncAt);
+
+    /**
+     * 查询到期需要同步的运单（按next_sync_at升序，走idx_next_sync索引）
+     */
+    List<TrackingNumber> selectDueForSync(@Param("now") LocalDateTime now,
+                                          @Param("limit") Integer limit);
+
+    /**
+     * 按ID游标分页查询未终结运单（id > afterId，按主键顺序，只取停滞检测需要的列）
+     */
+    List<TrackingNumber> selectActiveAfterId(@Param("afterId") Long afterId,
+                                             @Param("limit") Integer limit);
+
+    /**
+     * 认领待同步运单：将next_sync_at推迟到租约到期时间，避免被重复拉取
+     */
+    int leaseForSync(@Param("ids") List<Long> ids,
+                     @Param("now") LocalDateTime now,
+                     @Param("leaseUntil") LocalDateTime leaseUntil);
+
+    /**
+     * 查询ids中next_sync_at等于指定租约到期时间的运单ID（即本次认领成功的运单）
+     */
+    List<Long> selectLeasedIds(@Param("ids") List<Long> ids,
+                               @Param("leaseUntil") LocalDateTime leaseUntil);
+
     /**
      * 删除运单
      */
@@ -0,0 +1,258 @@
+package com.logistics.track17.service;
+
+import com.logistics.track17.dto.CarrierLanePerformanceDTO;
+import com.logistics.track17.entity.CarrierLaneStats;
+import com.logistics.track17.entity.CarrierLaneTransitBucket;
+import com.logistics.track17.entity.TrackingNumber;
+import com.logistics.track17.mapper.CarrierLaneStatsMapper;
+import com.logistics.track17.mapper.TrackingNumberMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 承运商时效统计服务
+ * 运单同步时状态首次变为 Delivered / Exception 的，在同一事务内按 (承运商, 始发国, 目的国, 月份)
+ * 累加签收/异常数和运输天数直方图（每天一个桶，各月/各线路直接相加即可合并）；
+ * 推送和批量同步可能同时处理同一运单，状态变化先以条件UPDATE抢占，只有抢占成功的事务计数；
+ * 查询时合并所选月份的直方图计算 p50/p90/p99，不扫描 tracking_numbers
+ */
+@Slf4j
+@Service
+public class CarrierPerformanceService {
+
+    public static final String STATUS_DELIVERED = "Delivered";
+    public static final String STATUS_EXCEPTION = "Exception";
+
+    // 直方图上限桶：该天数及以上计入同一个桶（与 V24 回填一致）
+    public static final int MAX_TRANSIT_DAYS = 90;
+
+    private static final List<String> DELIVERED_EXCLUDED = Collections.singletonList(STATUS_DELIVERED);
+    private static final List<String> EXCEPTION_EXCLUDED = Arrays.asList(STATUS_EXCEPTION, STATUS_DELIVERED);
+
+    private final CarrierLaneStatsMapper carrierLaneStatsMapper;
+    private final TrackingNumberMapper trackingNumberMapper;
+
+    public CarrierPerformanceService(CarrierLaneStatsMapper carrierLaneStatsMapper,
+            TrackingNumberMapper trackingNumberMapper) {
+        this.carrierLaneStatsMapper = carrierLaneStatsMapper;
+        this.trackingNumberMapper = trackingNumberMapper;
+    }
+
+    /**
+     * 累加一批同步结果中的状态变化（需在同步结果写入的事务内、写回运单之前调用）
+     * 签收：之前不是Delivered；异常：之前既不是Exception也不是Delivered。
+     * 内存中的previous可能已过时，以数据库中条件UPDATE抢占成功为准
+     */
+    public void recordTransitions(List<TrackingService.SyncMergeResult> results) {
+        // 按固定顺序写入，并发同步的事务以相同顺序加锁，避免死锁
+        Map<String, CarrierLaneStats> stats = new TreeMap<>();
+        Map<String, CarrierLaneTransitBucket> buckets = new TreeMap<>();
+
+        List<TrackingService.SyncMergeResult> candidates = new ArrayList<>();
+        for (TrackingService.SyncMergeResult result : results) {
+            String previous = result.getPreviousTrackStatus();
+            String current = result.getTrackingNumber().getTrackStatus();
+            if ((STATUS_DELIVERED.equals(current) && !STATUS_DELIVERED.equals(previous))
+                    || (STATUS_EXCEPTION.equals(current)
+                            && !STATUS_EXCEPTION.equals(previous) && !STATUS_DELIVERED.equals(previous))) {
+                candidates.add(result);
+            }
+        }
+        candidates.sort(Comparator.comparing(result -> result.getTrackingNumber().getId()));
+
+        for (TrackingService.SyncMergeResult result : candidates) {
+            TrackingNumber tn = result.getTrackingNumber();
+            String current = tn.getTrackStatus();
+            boolean delivered = STATUS_DELIVERED.equals(current);
+            if (trackingNumberMapper.claimTrackStatus(tn.getId(), current,
+                    delivered ? DELIVERED_EXCLUDED : EXCEPTION_EXCLUDED) == 0) {
+                continue;
+            }
+
+            if (delivered) {
+                LocalDate month = monthOf(tn.getDeliveredTime());
+                CarrierLaneStats delta = statsDelta(stats, tn, month);
+                delta.setDeliveredCount(delta.getDeliveredCount() + 1);
+
+                Integer transitDays = transitDays(tn);
+                if (transitDays != null) {
+                    delta.setTransitSampleCount(delta.getTransitSampleCount() + 1);
+                    delta.setTransitDaysTotal(delta.getTransitDaysTotal() + transitDays);
+                    CarrierLaneTransitBucket bucket = bucketDelta(buckets, tn, month, transitDays);
+                    bucket.setParcelCount(bucket.getParcelCount() + 1);
+                }
+            } else {
+                CarrierLaneStats delta = statsDelta(stats, tn, monthOf(tn.getLatestEventTime()));
+                delta.setExceptionCount(delta.getExceptionCount() + 1);
+            }
+        }
+
+        if (!stats.isEmpty()) {
+            carrierLaneStatsMapper.applyStatsDeltas(new ArrayList<>(stats.values()));
+        }
+        if (!buckets.isEmpty()) {
+            carrierLaneStatsMapper.applyHistogramDeltas(new ArrayList<>(buckets.values()));
+        }
+    }
+
+    /**
+     * 查询承运商线路时效（最近几个自然月，含当月）
+     * 同一线路按p50升序、样本数降序排列，便于按实测时效选择承运商
+     *
+     * @param months 统计月数
+     */
+    public List<CarrierLanePerformanceDTO> getLanePerformance(int months, String carrierCode,
+            String originCountry, String destinationCountry) {
+        LocalDate startMonth = LocalDate.now().withDayOfMonth(1).minusMonths(Math.max(months, 1) - 1L);
+        String carrier = StringUtils.trimToNull(carrierCode);
+        String origin = StringUtils.trimToNull(originCountry);
+        String destination = StringUtils.trimToNull(destinationCountry);
+
+        Map<String, int[]> histograms = new HashMap<>();
+        for (CarrierLaneTransitBucket bucket : carrierLaneStatsMapper.selectLaneHistogram(startMonth,
+                carrier, origin, destination)) {
+            int[] histogram = histograms.computeIfAbsent(
+                    laneKey(bucket.getCarrierCode(), bucket.getOriginCountry(), bucket.getDestinationCountry()),
+                    k -> new int[MAX_TRANSIT_DAYS + 1]);
+            int days = Math.min(Math.max(bucket.getTransitDays(), 0), MAX_TRANSIT_DAYS);
+            histogram[days] += bucket.getParcelCount();
+        }
+
+        List<CarrierLanePerformanceDTO> lanes = new ArrayList<>();
+        for (CarrierLaneStats stats : carrierLaneStatsMapper.selectLaneTotals(startMonth,
+                carrier, origin, destination)) {
+            CarrierLanePerformanceDTO dto = new CarrierLanePerformanceDTO();
+            dto.setCarrierCode(stats.getCarrierCode());
+            dto.setOriginCountry(stats.getOriginCountry());
+            dto.setDestinationCountry(stats.getDestinationCountry());
+
+            long delivered = stats.getDeliveredCount() != null ? stats.getDeliveredCount() : 0;
+            long exceptions = stats.getExceptionCount() != null ? stats.getExceptionCount() : 0;
+            long samples = stats.getTransitSampleCount() != null ? stats.getTransitSampleCount() : 0;
+            dto.setDeliveredCount(delivered);
+            dto.setExceptionCount(exceptions);
+            dto.setTransitSampleCount(samples);
+            if (delivered + exceptions > 0) {
+                dto.setExceptionRate(BigDecimal.valueOf(exceptions)
+                        .divide(BigDecimal.valueOf(delivered + exceptions), 4, RoundingMode.HALF_UP));
+            }
+            if (samples > 0 && stats.getTransitDaysTotal() != null) {
+                dto.setAvgTransitDays(BigDecimal.valueOf(stats.getTransitDaysTotal())
+                        .divide(BigDecimal.valueOf(samples), 1, RoundingMode.HALF_UP));
+            }
+
+            int[] histogram = histograms.get(laneKey(stats.getCarrierCode(), stats.getOriginCountry(),
+                    stats.getDestinationCountry()));
+            if (histogram != null) {
+                dto.setP50TransitDays(percentile(histogram, 0.50));
+                dto.setP90TransitDays(percentile(histogram, 0.90));
+                dto.setP99TransitDays(percentile(histogram, 0.99));
+            }
+            lanes.add(dto);
+        }
+
+        lanes.sort(Comparator.comparing(CarrierLanePerformanceDTO::getOriginCountry)
+                .thenComparing(CarrierLanePerformanceDTO::getDestinationCountry)
+                .thenComparing(CarrierLanePerformanceDTO::getP50TransitDays,
+                        Comparator.nullsLast(Comparator.naturalOrder()))
+                .thenComparing(CarrierLanePerformanceDTO::getTransitSampleCount, Comparator.reverseOrder()));
+        return lanes;
+    }
+
+    /**
+     * 直方图分位数：累计数首次达到 总数 * p 的桶
+     */
+    private static Integer percentile(int[] histogram, double p) {
+        long total = 0;
+        for (int count : histogram) {
+            total += count;
+        }
+        if (total == 0) {
+            return null;
+        }
+        long rank = (long) Math.ceil(total * p);
+        long cumulative = 0;
+        for (int days = 0; days < histogram.length; days++) {
+            cumulative += histogram[days];
+            if (cumulative >= rank) {
+                return days;
+            }
+        }
+        return histogram.length - 1;
+    }
+
+    /**
+     * 运输天数：优先17Track返回值，缺失时取签收时间 - 揽收时间；超过上限计入上限桶
+     */
+    private static Integer transitDays(TrackingNumber tn) {
+        Integer days = tn.getDaysOfTransit();
+        if (days == null && tn.getPickupTime() != null && tn.getDeliveredTime() != null) {
+            days = (int) ChronoUnit.DAYS.between(tn.getPickupTime().toLocalDate(), tn.getDeliveredTime().toLocalDate());
+        }
+        if (days == null || days < 0) {
+            return null;
+        }
+        return Math.min(days, MAX_TRANSIT_DAYS);
+    }
+
+    /**
+     * 线路键：承运商|始发国|目的国（空值记为空字符串，与统计表一致）
+     */
+    public static String laneKey(String carrierCode, String originCountry, String destinationCountry) {
+        return StringUtils.defaultString(carrierCode) + "|" + StringUtils.defaultString(originCountry)
+                + "|" + StringUtils.defaultString(destinationCountry);
+    }
+
+    private LocalDate monthOf(LocalDateTime time) {
+        LocalDate date = time != null ? time.toLocalDate() : LocalDate.now();
+        return date.withDayOfMonth(1);
+    }
+
+    private CarrierLaneStats statsDelta(Map<String, CarrierLaneStats> stats, TrackingNumber tn, LocalDate month) {
+        String key = laneKey(tn.getCarrierCode(), tn.getOriginCountry(), tn.getDestinationCountry()) + "|" + month;
+        return stats.computeIfAbsent(key, k -> {
+            CarrierLaneStats delta = new CarrierLaneStats();
+            delta.setCarrierCode(StringUtils.defaultString(tn.getCarrierCode()));
+            delta.setOriginCountry(StringUtils.defaultString(tn.getOriginCountry()));
+            delta.setDestinationCountry(StringUtils.defaultString(tn.getDestinationCountry()));
+            delta.setStatMonth(month);
+            delta.setDeliveredCount(0);
+            delta.setExceptionCount(0);
+            delta.setTransitSampleCount(0);
+            delta.setTransitDaysTotal(0L);
+            return delta;
+        });
+    }
+
+    private CarrierLaneTransitBucket bucketDelta(Map<String, CarrierLaneTransitBucket> buckets, TrackingNumber tn,
+            LocalDate month, int transitDays) {
+        // 天数补零，同一线路月份内按天数顺序写入
+        String key = laneKey(tn.getCarrierCode(), tn.getOriginCountry(), tn.getDestinationCountry())
+                + "|" + month + "|" + String.format("%03d", transitDays);
+        return buckets.computeIfAbsent(key, k -> {
+            CarrierLaneTransitBucket bucket = new CarrierLaneTransitBucket();
+            bucket.setCarrierCode(StringUtils.defaultString(tn.getCarrierCode()));
+            bucket.setOriginCountry(StringUtils.defaultString(tn.getOriginCountry()));
+            bucket.setDestinationCountry(StringUtils.defaultString(tn.getDestinationCountry()));
+            bucket.setStatMonth(month);
+            bucket.setTransitDays(transitDays);
+            bucket.setParcelCount(0);
+            return bucket;
+        });
+    }
+}
@@ -2,15 +2,17 @@ package com.logistics.track17.service;
 
 import com.logistics.track17.entity.Carrier;
 import com.logistics.track17.mapper.CarrierMapper;
+import com.logistics.track17.util.CarrierLookup;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.cache.annotation.CacheEvict;
-import org.springframework.cache.annotation.Cacheable;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.PostConstruct;
 import java.util.List;
 
 /**
  * 承运商服务
+ * 承运商表数据量小且很少变化，启动时整体加载到内存查找表，按carrier ID/code查询不再访问Redis和数据库
  */
 @Slf4j
 @Service
@@ -18,26 +20,56 @@ public class CarrierService {
 
     private final CarrierMapper carrierMapper;
 
+    private volatile CarrierLookup lookup = CarrierLookup.EMPTY;
+
     public CarrierService(CarrierMapper carrierMapper) {
         this.carrierMapper = carrierMapper;
     }
 
+    @PostConstruct
+    public void init() {
+        try {
+            reload();
+        } catch (Exception e) {
+            // 启动时加载失败不阻塞应用，查询时回退到数据库，定时任务会再次尝试加载
+            log.error("Failed to load carrier lookup table", e);
+        }
+    }
+
     /**
-     * 根据17Track carrier ID获取承运商（带缓存）
+     * 定时重新加载承运商（默认每小时，用于同步CarrierSyncTool或其他节点的变更）
+     */
+    @Scheduled(fixedDelayString = "${carrier.lookup.refresh-interval:3600000}", initialDelay = 3600000)
+    public void reload() {
+        lookup = CarrierLookup.of(carrierMapper.selectAll());
+        log.info("Carrier lookup table loaded: {} carriers", lookup.size());
+    }
+
+    /**
+     * 根据17Track carrier ID获取承运商（内存查找）
      */
-    @Cacheable(value = "carrier", key = "'id:' + #carrierId", unless = "#result == null")
     public Carrier getByCarrierId(Integer carrierId) {
-        log.debug("Querying carrier by ID from database: {}", carrierId);
-        return carrierMapper.selectByCarrierId(carrierId);
+        if (carrierId == null) {
+            return null;
+        }
+        CarrierLookup current = lookup;
+        if (current.size() == 0) {
+            log.debug("Carrier lookup table not loaded, querying database: {}", carrierId);
+            return carrierMapper.selectByCarrierId(carrierId);
+        }
+        return current.get(carrierId);
     }
 
     /**
-     * 根据系统carrier code获取承运商（带缓存）
+     * 根据系统carrier code获取承运商（内存查找）
      */
-    @Cacheable(value = "carrier", key = "'code:' + #carrierCode", unless = "#result == null")
     public Carrier getByCarrierCode(String carrierCode) {
-        log.debug("Querying carrier by code from database: {}", carrierCode);
-        return carrierMapper.selectByCarrierCode(carrierCode);
+        CarrierLookup current = lookup;
+        if (current.size() == 0) {
+            log.debug("Carrier lookup table not loaded, querying database: {}", carrierCode);
+            return carrierMapper.selectByCarrierCode(carrierCode);
+        }
+        return current.getByCode(carrierCode);
     }
 
     /**
@@ -55,14 +87,15 @@ public class CarrierService {
     }
 
     /**
-     * 批量导入承运商（清除缓存）
+     * 批量导入承运商（导入后重建内存查找表）
      */
-    @CacheEvict(value = "carrier", allEntries = true)
     public int batchImport(List<Carrier> carriers) {
         if (carriers == null || carriers.isEmpty()) {
             return 0;
         }
-        log.info("Batch importing {} carriers, clearing cache", carriers.size());
-        return carrierMapper.batchInsert(carriers);
+        log.info("Batch importing {} carriers, reloading lookup table", carriers.size());
+        int imported = carrierMapper.batchInsert(carriers);
+        reload();
+        return imported;
     }
 }
@@ -1,8 +1,9 @@
 package com.logistics.track17.service;
 
+import com.logistics.track17.dto.ShopOrderStatsDTO;
 import com.logistics.track17.entity.Shop;
 import com.logistics.track17.enums.AlertType;
-import com.logistics.track17.mapper.OrderMapper;
+import com.logistics.track17.mapper.ShopDailyOrderStatsMapper;
 import com.logistics.track17.mapper.ShopMapper;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
@@ -12,6 +13,9 @@ import java.math.RoundingMode;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 /**
  * 数据汇总服务
@@ -21,16 +25,16 @@ import java.util.List;
 @Slf4j
 public class DataSummaryService {
 
-    private final OrderMapper orderMapper;
+    private final ShopDailyOrderStatsMapper shopDailyOrderStatsMapper;
     private final ShopMapper shopMapper;
     private final DingtalkNotificationService notificationService;
 
     private static final DateTimeFormatter DATE_FMT = DateTimeFormatter.ofPattern("yyyy-MM-dd");
 
-    public DataSummaryService(OrderMapper orderMapper,
+    public DataSummaryService(ShopDailyOrderStatsMapper shopDailyOrderStatsMapper,
             ShopMapper shopMapper,
             DingtalkNotificationService notificationService) {
-        this.orderMapper = orderMapper;
+        this.shopDailyOrderStatsMapper = shopDailyOrderStatsMapper;
         this.shopMapper = shopMapper;
         this.notificationService = notificationService;
     }
@@ -40,11 +44,9 @@ public class DataSummaryService {
      */
     public void sendDailySummary() {
         LocalDate yesterday = LocalDate.now().minusDays(1);
-        String startDate = yesterday.format(DATE_FMT);
-        String endDate = LocalDate.now().format(DATE_FMT);
 
         String title = "📊 日报 - " + yesterday.format(DateTimeFormatter.ofPattern("yyyy/MM/dd"));
-        String content = buildSummaryContent("日报", startDate, endDate, yesterday.toString());
+        String content = buildSummaryContent("日报", yesterday, LocalDate.now(), yesterday.toString());
         String dedupKey = "DAILY_SUMMARY:" + yesterday;
 
         notificationService.sendAlert(AlertType.DAILY_SUMMARY, title, content, null, "SCHEDULED", dedupKey);
@@ -57,12 +59,10 @@ public class DataSummaryService {
     public void sendMonthlySummary() {
         LocalDate firstDayLastMonth = LocalDate.now().minusMonths(1).withDayOfMonth(1);
         LocalDate firstDayThisMonth = LocalDate.now().withDayOfMonth(1);
-        String startDate = firstDayLastMonth.format(DATE_FMT);
-        String endDate = firstDayThisMonth.format(DATE_FMT);
 
         String monthLabel = firstDayLastMonth.format(DateTimeFormatter.ofPattern("yyyy年MM月"));
         String title = "📊 月报 - " + monthLabel;
-        String content = buildSummaryContent("月报", startDate, endDate, monthLabel);
+        String content = buildSummaryContent("月报", firstDayLastMonth, firstDayThisMonth, monthLabel);
         String dedupKey = "MONTHLY_SUMMARY:" + firstDayLastMonth;
 
         notificationService.sendAlert(AlertType.MONTHLY_SUMMARY, title, content, null, "SCHEDULED", dedupKey);
@@ -81,12 +81,10 @@ public class DataSummaryService {
 
         LocalDate quarterStart = LocalDate.of(year, (lastQuarter - 1) * 3 + 1, 1);
         LocalDate quarterEnd = quarterStart.plusMonths(3);
-        String startDate = quarterStart.format(DATE_FMT);
-        String endDate = quarterEnd.format(DATE_FMT);
 
         String quarterLabel = year + "年Q" + lastQuarter;
         String title = "📊 季报 - " + quarterLabel;
-        String content = buildSummaryContent("季报", startDate, endDate, quarterLabel);
+        String content = buildSummaryContent("季报", quarterStart, quarterEnd, quarterLabel);
         String dedupKey = "QUARTERLY_SUMMARY:" + quarterLabel;
 
         notificationService.sendAlert(AlertType.QUARTERLY_SUMMARY, title, content, null, "SCHEDULED", dedupKey);
@@ -100,12 +98,10 @@ public class DataSummaryService {
         int lastYear = LocalDate.now().getYear() - 1;
         LocalDate yearStart = LocalDate.of(lastYear, 1, 1);
         LocalDate yearEnd = LocalDate.of(lastYear + 1, 1, 1);
-        String startDate = yearStart.format(DATE_FMT);
-        String endDate = yearEnd.format(DATE_FMT);
 
         String yearLabel = lastYear + "年";
         String title = "📊 年报 - " + yearLabel;
-        String content = buildSummaryContent("年报", startDate, endDate, yearLabel);
+        String content = buildSummaryContent("年报", yearStart, yearEnd, yearLabel);
         String dedupKey = "YEARLY_SUMMARY:" + lastYear;
 
         notificationService.sendAlert(AlertType.YEARLY_SUMMARY, title, content, null, "SCHEDULED", dedupKey);
@@ -114,22 +110,31 @@ public class DataSummaryService {
 
     /**
      * 构建汇总内容
+     * 从店铺每日汇总表按店铺分组一次查询 [startDate, endDate)，全局汇总为各店铺之和
      */
-    private String buildSummaryContent(String reportType, String startDate, String endDate, String periodLabel) {
+    private String buildSummaryContent(String reportType, LocalDate startDate, LocalDate endDate, String periodLabel) {
         List<Shop> activeShops = shopMapper.findByIsActive(true);
 
         StringBuilder sb = new StringBuilder();
         sb.append("## 📊 ").append(reportType).append(" - ").append(periodLabel).append("\n\n");
-        sb.append("**统计范围**: ").append(startDate).append(" ~ ").append(endDate).append("\n\n");
+        sb.append("**统计范围**: ").append(startDate.format(DATE_FMT)).append(" ~ ")
+                .append(endDate.format(DATE_FMT)).append("\n\n");
 
         // 全局汇总
-        Long totalOrders = orderMapper.countByDateRange(null, startDate, endDate);
-        BigDecimal totalRevenue = orderMapper.sumRevenueByDateRange(null, startDate, endDate);
+        Map<Long, ShopOrderStatsDTO> shopTotals = shopDailyOrderStatsMapper.selectShopTotals(startDate, endDate)
+                .stream()
+                .collect(Collectors.toMap(ShopOrderStatsDTO::getShopId, Function.identity()));
+        long totalOrders = 0;
+        BigDecimal totalRevenue = BigDecimal.ZERO;
+        for (ShopOrderStatsDTO totals : shopTotals.values()) {
+            totalOrders += totals.getOrderCount();
+            totalRevenue = totalRevenue.add(totals.getRevenue());
+        }
 
         sb.append("### 📈 全局汇总\n\n");
         sb.append("| 指标 | 数值 |\n");
         sb.append("|------|------|\n");
-        sb.append("| 总订单数 | ").append(totalOrders != null ? totalOrders : 0).append(" |\n");
+        sb.append("| 总订单数 | ").append(totalOrders).append(" |\n");
         sb.append("| 总销售额 | ").append(formatAmount(totalRevenue)).append(" |\n");
         sb.append("| 活跃店铺 | ").append(activeShops.size()).append(" |\n\n");
 
@@ -140,12 +145,13 @@ public class DataSummaryService {
             sb.append("|------|--------|--------|\n");
 
             for (Shop shop : activeShops) {
-                Long shopOrders = orderMapper.countByDateRange(shop.getId(), startDate, endDate);
-                BigDecimal shopRevenue = orderMapper.sumRevenueByDateRange(shop.getId(), startDate, endDate);
+                ShopOrderStatsDTO totals = shopTotals.get(shop.getId());
+                long shopOrders = totals != null ? totals.getOrderCount() : 0L;
+                BigDecimal shopRevenue = totals != null ? totals.getRevenue() : null;
 
                 String shopName = shop.getShopName() != null ? shop.getShopName() : shop.getShopDomain();
                 sb.append("| ").append(shopName).append(" | ");
-                sb.append(shopOrders != null ? shopOrders : 0).append(" | ");
+                sb.append(shopOrders).append(" | ");
                 sb.append(formatAmount(shopRevenue)).append(" |\n");
             }
             sb.append("\n");
@@ -8,15 +8,20 @@ import com.logistics.track17.entity.Shop;
 import com.logistics.track17.mapper.OrderItemMapper;
 import com.logistics.track17.mapper.OrderMapper;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.zip.GZIPOutputStream;
 
 /**
  * 订单服务
@@ -28,11 +33,17 @@ public class OrderService {
     private final OrderMapper orderMapper;
     private final OrderItemMapper orderItemMapper;
     private final ObjectMapper objectMapper;
+    private final OrderStatsRollupService orderStatsRollupService;
 
-    public OrderService(OrderMapper orderMapper, OrderItemMapper orderItemMapper, ObjectMapper objectMapper) {
+    @Value("${order.raw-data.compress:false}")
+    private boolean compressRawData;
+
+    public OrderService(OrderMapper orderMapper, OrderItemMapper orderItemMapper, ObjectMapper objectMapper,
+            OrderStatsRollupService orderStatsRollupService) {
         this.orderMapper = orderMapper;
         this.orderItemMapper = orderItemMapper;
         this.objectMapper = objectMapper;
+        this.orderStatsRollupService = orderStatsRollupService;
     }
 
     /**
@@ -41,14 +52,22 @@ public class OrderService {
      */
     @Transactional(rollbackFor = Exception.class)
     public Order saveOrderFromWebhook(Shop shop, JsonNode orderData) {
+        return saveOrderFromWebhook(shop, orderData, null);
+    }
+
+    /**
+     * 从webhook保存订单（复用原始报文）
+     * 通过单条 INSERT ... ON DUPLICATE KEY UPDATE 实现幂等写入，raw_data直接使用webhook原始报文而不重新序列化
+     *
+     * @param rawPayload webhook原始报文（为空时序列化orderData）
+     */
+    @Transactional(rollbackFor = Exception.class)
+    public Order saveOrderFromWebhook(Shop shop, JsonNode orderData, String rawPayload) {
         try {
             // 解析订单基本信息
             Long shopifyOrderId = orderData.get("id").asLong();
 
-            // 检查订单是否已存在（幂等性）
-            Order existingOrder = orderMapper.selectByShopifyOrderId(shop.getId(), shopifyOrderId);
-
-            Order order = existingOrder != null ? existingOrder : new Order();
+            Order order = new Order();
             order.setShopId(shop.getId());
             order.setShopifyOrderId(shopifyOrderId);
             order.setOrderNumber(
@@ -103,20 +122,30 @@ public class OrderService {
             }
             order.setSyncedAt(LocalDateTime.now());
 
-            // 保存原始JSON
-            order.setRawData(objectMapper.writeValueAsString(orderData));
+            // 保存原始JSON（可选gzip压缩）
+            String rawData = rawPayload != null ? rawPayload : objectMapper.writeValueAsString(orderData);
+            if (compressRawData) {
+                order.setRawDataGzip(gzip(rawData));
+            } else {
+                order.setRawData(rawData);
+            }
+
+            // 写入前的金额和支付状态，用于按差值更新每日汇总
+            Order previous = orderMapper.selectRollupSnapshot(shop.getId(), shopifyOrderId);
+            boolean created = previous == null;
 
-            // 保存或更新订单
-            if (existingOrder == null) {
-                orderMapper.insert(order);
+            // 插入或更新订单（一次往返）
+            orderMapper.upsert(order);
+            orderStatsRollupService.applyOrderChange(previous, order);
+            if (created) {
                 log.info("Created new order: {} for shop: {}", order.getOrderNumber(), shop.getShopName());
             } else {
-                orderMapper.update(order);
                 log.info("Updated existing order: {} for shop: {}", order.getOrderNumber(), shop.getShopName());
             }
 
-            // 保存订单商品
+            // 保存订单商品（先清除旧明细再写入，避免重复；新订单没有旧明细，删除不影响任何行）
             if (orderData.has("line_items") && orderData.get("line_items").isArray()) {
+                orderItemMapper.deleteByOrderId(order.getId());
                 saveOrderItems(order.getId(), orderData.get("line_items"));
             }
 
@@ -155,6 +184,17 @@ public class OrderService {
         }
     }
 
+    /**
+     * gzip压缩原始报文
+     */
+    private byte[] gzip(String text) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(text.length() / 4);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(text.getBytes(StandardCharsets.UTF_8));
+        }
+        return out.toByteArray();
+    }
+
     /**
      * 解析Shopify时间格式
      */
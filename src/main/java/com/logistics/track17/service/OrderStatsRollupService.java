@@ -0,0 +1,154 @@
+package com.logistics.track17.service;
+
+import com.logistics.track17.entity.Order;
+import com.logistics.track17.entity.ShopDailyOrderStats;
+import com.logistics.track17.mapper.ShopDailyOrderStatsMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 店铺每日订单汇总维护服务
+ * 订单写入时在同一事务内按差值更新 shop_daily_order_stats（先减去订单原有贡献，再加上新贡献）；
+ * 每晚按天从orders表重算最近几天的汇总，修正增量维护可能产生的偏差
+ */
+@Slf4j
+@Service
+public class OrderStatsRollupService {
+
+    // 支付状态分组（与 ShopDailyOrderStatsMapper.xml 保持一致）
+    private static final Set<String> PAID_STATUSES =
+            new HashSet<>(Arrays.asList("paid", "partially_paid", "partially_refunded"));
+    private static final Set<String> REFUNDED_STATUSES =
+            new HashSet<>(Arrays.asList("refunded", "voided"));
+
+    private final ShopDailyOrderStatsMapper statsMapper;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${stats.rollup.reconcile-days:7}")
+    private int reconcileDays;
+
+    public OrderStatsRollupService(ShopDailyOrderStatsMapper statsMapper,
+            TransactionTemplate transactionTemplate) {
+        this.statsMapper = statsMapper;
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    /**
+     * 订单写入后更新汇总（需在订单写入的事务内调用）
+     *
+     * @param previous 写入前的订单（新订单为null），只需下单时间、币种、金额、支付状态
+     * @param current  本次写入的订单；已有订单的下单时间和币种不会被覆盖，仍按previous计
+     */
+    public void applyOrderChange(Order previous, Order current) {
+        Map<String, ShopDailyOrderStats> deltas = new LinkedHashMap<>();
+        if (previous != null) {
+            accumulate(deltas, previous.getShopId(), previous.getCreatedAt(), previous.getCurrency(),
+                    previous.getTotalPrice(), previous.getFinancialStatus(), -1);
+            accumulate(deltas, previous.getShopId(), previous.getCreatedAt(), previous.getCurrency(),
+                    current.getTotalPrice(), current.getFinancialStatus(), 1);
+        } else {
+            accumulate(deltas, current.getShopId(), current.getCreatedAt(), current.getCurrency(),
+                    current.getTotalPrice(), current.getFinancialStatus(), 1);
+        }
+
+        // 金额和支付状态都没变时（如只更新了发货状态）差值为0，不写库
+        List<ShopDailyOrderStats> changed = new ArrayList<>();
+        for (ShopDailyOrderStats delta : deltas.values()) {
+            if (!isZero(delta)) {
+                changed.add(delta);
+            }
+        }
+        if (!changed.isEmpty()) {
+            statsMapper.applyDeltas(changed);
+        }
+    }
+
+    /**
+     * 每晚重算最近几天的汇总（默认凌晨3点30分）
+     */
+    @Scheduled(cron = "${stats.rollup.reconcile-cron:0 30 3 * * ?}")
+    public void reconcileRecent() {
+        LocalDate today = LocalDate.now();
+        try {
+            reconcile(today.minusDays(reconcileDays), today.plusDays(1));
+        } catch (Exception e) {
+            log.error("订单汇总重算失败", e);
+        }
+    }
+
+    /**
+     * 从orders表重算 [startDate, endDate) 内每天的汇总，每天一个事务
+     */
+    public void reconcile(LocalDate startDate, LocalDate endDate) {
+        int days = 0;
+        for (LocalDate date = startDate; date.isBefore(endDate); date = date.plusDays(1)) {
+            LocalDate statDate = date;
+            transactionTemplate.executeWithoutResult(status -> {
+                statsMapper.deleteByDate(statDate);
+                statsMapper.rebuildByDate(statDate);
+            });
+            days++;
+        }
+        log.info("订单汇总重算完成: {} ~ {} ({} 天)", startDate, endDate, days);
+    }
+
+    private void accumulate(Map<String, ShopDailyOrderStats> deltas, Long shopId, LocalDateTime createdAt,
+            String currency, BigDecimal totalPrice, String financialStatus, int sign) {
+        // 没有下单时间的订单不计入汇总（与重算SQL一致）
+        if (createdAt == null) {
+            return;
+        }
+        LocalDate statDate = createdAt.toLocalDate();
+        String key = shopId + "|" + statDate + "|" + currency;
+        ShopDailyOrderStats delta = deltas.computeIfAbsent(key, k -> {
+            ShopDailyOrderStats stats = new ShopDailyOrderStats();
+            stats.setShopId(shopId);
+            stats.setStatDate(statDate);
+            stats.setCurrency(currency);
+            stats.setOrderCount(0);
+            stats.setRevenue(BigDecimal.ZERO);
+            stats.setPaidOrderCount(0);
+            stats.setPaidRevenue(BigDecimal.ZERO);
+            stats.setRefundedOrderCount(0);
+            stats.setRefundedRevenue(BigDecimal.ZERO);
+            return stats;
+        });
+
+        BigDecimal amount = totalPrice != null ? totalPrice : BigDecimal.ZERO;
+        if (sign < 0) {
+            amount = amount.negate();
+        }
+        delta.setOrderCount(delta.getOrderCount() + sign);
+        delta.setRevenue(delta.getRevenue().add(amount));
+        if (PAID_STATUSES.contains(financialStatus)) {
+            delta.setPaidOrderCount(delta.getPaidOrderCount() + sign);
+            delta.setPaidRevenue(delta.getPaidRevenue().add(amount));
+        } else if (REFUNDED_STATUSES.contains(financialStatus)) {
+            delta.setRefundedOrderCount(delta.getRefundedOrderCount() + sign);
+            delta.setRefundedRevenue(delta.getRefundedRevenue().add(amount));
+        }
+    }
+
+    private boolean isZero(ShopDailyOrderStats delta) {
+        return delta.getOrderCount() == 0
+                && delta.getRevenue().signum() == 0
+                && delta.getPaidOrderCount() == 0
+                && delta.getPaidRevenue().signum() == 0
+                && delta.getRefundedOrderCount() == 0
+                && delta.getRefundedRevenue().signum() == 0;
+    }
+}
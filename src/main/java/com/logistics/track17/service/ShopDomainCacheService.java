@@ -0,0 +1,144 @@
+package com.logistics.track17.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.logistics.track17.entity.Shop;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * 店铺域名 -> 店铺 本地缓存
+ * 每条Shopify webhook都要按域名查店铺，店铺数量少且只在OAuth授权、卸载、店铺信息更新等操作时变化；
+ * 店铺写入后按店铺ID失效，并通过pub/sub广播到所有节点（事务提交后再失效一次，防止提交前被旧数据回填）
+ */
+@Slf4j
+@Service
+public class ShopDomainCacheService {
+
+    private static final String EVICT_CHANNEL = "shop:domain:evict";
+    // 广播内容：全部失效
+    private static final String EVICT_ALL = "*";
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final RedisMessageListenerContainer listenerContainer;
+
+    @Value("${shop.domain-cache.max-size:5000}")
+    private long maxSize;
+
+    @Value("${shop.domain-cache.expire-seconds:600}")
+    private long expireSeconds;
+
+    private Cache<String, Shop> cache;
+
+    public ShopDomainCacheService(StringRedisTemplate stringRedisTemplate,
+            RedisMessageListenerContainer listenerContainer) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.listenerContainer = listenerContainer;
+    }
+
+    @PostConstruct
+    public void init() {
+        cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(expireSeconds, TimeUnit.SECONDS)
+                .build();
+
+        listenerContainer.addMessageListener((message, pattern) -> {
+            String body = new String(message.getBody(), StandardCharsets.UTF_8);
+            if (EVICT_ALL.equals(body)) {
+                cache.invalidateAll();
+            } else {
+                invalidateLocal(Long.valueOf(body));
+            }
+            log.debug("Local shop domain cache evicted by broadcast: {}", body);
+        }, new ChannelTopic(EVICT_CHANNEL));
+    }
+
+    /**
+     * 按域名读取店铺，未命中时通过loader查询并缓存（查不到不缓存）
+     * 返回副本，调用方修改返回对象不会影响缓存
+     */
+    public Shop get(String shopDomain, Function<String, Shop> loader) {
+        if (shopDomain == null) {
+            return null;
+        }
+        Shop cached = cache.getIfPresent(shopDomain);
+        if (cached == null) {
+            cached = loader.apply(shopDomain);
+            if (cached == null) {
+                return null;
+            }
+            cache.put(shopDomain, cached);
+        }
+        return copy(cached);
+    }
+
+    /**
+     * 店铺写入后失效（在事务中调用时提交后再失效一次）
+     */
+    public void evict(Long shopId) {
+        if (shopId == null) {
+            return;
+        }
+        evictNow(String.valueOf(shopId));
+        afterCommit(String.valueOf(shopId));
+    }
+
+    /**
+     * 全部失效（用于直接批量修改店铺表的场景）
+     */
+    public void evictAll() {
+        evictNow(EVICT_ALL);
+        afterCommit(EVICT_ALL);
+    }
+
+    private void afterCommit(String body) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                evictNow(body);
+            }
+        });
+    }
+
+    private void evictNow(String body) {
+        if (EVICT_ALL.equals(body)) {
+            cache.invalidateAll();
+        } else {
+            invalidateLocal(Long.valueOf(body));
+        }
+
+        try {
+            stringRedisTemplate.convertAndSend(EVICT_CHANNEL, body);
+        } catch (Exception e) {
+            // 广播失败时其他节点依赖过期时间兜底
+            log.warn("Failed to broadcast shop domain cache eviction: {}", body, e);
+        }
+    }
+
+    private void invalidateLocal(Long shopId) {
+        // 店铺数量少，按值扫描即可（域名本身也可能被修改）
+        cache.asMap().values().removeIf(shop -> shopId.equals(shop.getId()));
+    }
+
+    private Shop copy(Shop shop) {
+        Shop copy = new Shop();
+        BeanUtils.copyProperties(shop, copy);
+        return copy;
+    }
+}
@@ -23,10 +23,13 @@ public class ShopService {
 
     private final ShopMapper shopMapper;
     private final ShopifyOAuthService shopifyOAuthService;
+    private final ShopDomainCacheService shopDomainCacheService;
 
-    public ShopService(ShopMapper shopMapper, ShopifyOAuthService shopifyOAuthService) {
+    public ShopService(ShopMapper shopMapper, ShopifyOAuthService shopifyOAuthService,
+            ShopDomainCacheService shopDomainCacheService) {
         this.shopMapper = shopMapper;
         this.shopifyOAuthService = shopifyOAuthService;
+        this.shopDomainCacheService = shopDomainCacheService;
     }
 
     /**
@@ -71,7 +74,8 @@ public class ShopService {
             throw BusinessException.of("Shop domain is required");
         }
 
-        Shop existingShop = getByShopDomain(shop.getShopDomain());
+        // 写入路径直接查库，不使用可能过期的缓存副本
+        Shop existingShop = shopMapper.selectByShopDomain(shop.getShopDomain());
 
         if (existingShop != null) {
             log.info("Shop exists, updating: {}", shop.getShopDomain());
@@ -88,10 +92,10 @@ public class ShopService {
     }
 
     /**
-     * 根据店铺域名查询
+     * 根据店铺域名查询（本地缓存，店铺写入时失效）
      */
     public Shop getByShopDomain(String shopDomain) {
-        return shopMapper.selectByShopDomain(shopDomain);
+        return shopDomainCacheService.get(shopDomain, shopMapper::selectByShopDomain);
     }
 
     /**
@@ -101,6 +105,7 @@ public class ShopService {
     public void update(Shop shop) {
         log.info("Updating shop: {}", shop.getId());
         shopMapper.update(shop);
+        shopDomainCacheService.evict(shop.getId());
     }
 
     /**
@@ -159,6 +164,7 @@ public class ShopService {
 
         // 软删除：设置 deleted_at 时间戳
         shopMapper.deleteById(id);
+        shopDomainCacheService.evict(id);
         log.info("Shop soft deleted successfully: {}", id);
     }
 
@@ -243,6 +249,7 @@ public class ShopService {
             result.put("message", "缺少访问令牌或店铺域名");
             shop.setConnectionStatus("invalid");
             shopMapper.update(shop);
+            shopDomainCacheService.evict(shop.getId());
             return result;
         }
 
@@ -262,6 +269,8 @@ public class ShopService {
 
         shopMapper.update(shop);
 
+        shopDomainCacheService.evict(shop.getId());
+
         result.put("tokenType", shop.getTokenType());
         result.put("lastValidatedAt", shop.getLastValidatedAt());
 
@@ -329,6 +338,7 @@ public class ShopService {
             log.error("Failed to fetch shop info from Shopify", e);
             shop.setConnectionStatus("invalid");
             shopMapper.update(shop);
+            shopDomainCacheService.evict(shop.getId());
             throw BusinessException.of("获取商店信息失败: " + e.getMessage());
         }
 
@@ -337,6 +347,7 @@ public class ShopService {
         shop.setConnectionStatus("active");
         shop.setLastValidatedAt(java.time.LocalDateTime.now());
         shopMapper.update(shop);
+        shopDomainCacheService.evict(shop.getId());
 
         log.info("Successfully refreshed shop info for: {}", shopId);
         return convertToResponse(shop);
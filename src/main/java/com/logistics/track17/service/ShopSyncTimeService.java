@@ -0,0 +1,94 @@
+package com.logistics.track17.service;
+
+import com.logistics.track17.entity.Shop;
+import com.logistics.track17.mapper.ShopMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 店铺最后同步时间合并写入
+ * Webhook处理只在内存中记录每个店铺的最新同步时间，定时批量写入shops表，
+ * 避免大促期间每条订单webhook都对同一店铺行执行整行UPDATE而争用行锁
+ */
+@Slf4j
+@Service
+public class ShopSyncTimeService {
+
+    private static final int FLUSH_BATCH_SIZE = 500;
+
+    private final ShopMapper shopMapper;
+
+    // 店铺ID -> 待写入的最新同步时间
+    private final Map<Long, LocalDateTime> pending = new ConcurrentHashMap<>();
+
+    public ShopSyncTimeService(ShopMapper shopMapper) {
+        this.shopMapper = shopMapper;
+    }
+
+    /**
+     * 记录店铺同步时间（当前时间）
+     */
+    public void record(Long shopId) {
+        record(shopId, LocalDateTime.now());
+    }
+
+    /**
+     * 记录店铺同步时间，同一店铺只保留最新值
+     */
+    public void record(Long shopId, LocalDateTime syncTime) {
+        if (shopId == null || syncTime == null) {
+            return;
+        }
+        pending.merge(shopId, syncTime, (a, b) -> a.isAfter(b) ? a : b);
+    }
+
+    /**
+     * 定时批量写入（默认每5秒）
+     */
+    @Scheduled(fixedDelayString = "${shop.sync-time.flush-interval:5000}", initialDelay = 5000)
+    public void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        List<Shop> shops = new ArrayList<>();
+        for (Long shopId : pending.keySet()) {
+            // 取出并移除，刷新期间新记录的时间留到下一轮
+            LocalDateTime syncTime = pending.remove(shopId);
+            if (syncTime != null) {
+                Shop shop = new Shop();
+                shop.setId(shopId);
+                shop.setLastSyncTime(syncTime);
+                shops.add(shop);
+            }
+        }
+
+        for (int i = 0; i < shops.size(); i += FLUSH_BATCH_SIZE) {
+            List<Shop> batch = shops.subList(i, Math.min(i + FLUSH_BATCH_SIZE, shops.size()));
+            try {
+                shopMapper.updateLastSyncTimeBatch(batch);
+            } catch (Exception e) {
+                // 写入失败时放回，下一轮重试（期间若有更新的时间则保留较新的）
+                log.warn("Failed to flush last sync time for {} shops: {}", batch.size(), e.getMessage());
+                batch.forEach(shop -> record(shop.getId(), shop.getLastSyncTime()));
+            }
+        }
+        log.debug("Flushed last sync time for {} shops", shops.size());
+    }
+
+    /**
+     * 停机前写入剩余记录
+     */
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+}
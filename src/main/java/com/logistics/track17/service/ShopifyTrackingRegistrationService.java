@@ -0,0 +1,225 @@
+package com.logistics.track17.service;
+
+import com.logistics.track17.dto.BatchImportItem;
+import com.logistics.track17.dto.BatchImportRequest;
+import com.logistics.track17.dto.BatchImportResult;
+import com.logistics.track17.entity.ShopifyTrackingRegistration;
+import com.logistics.track17.entity.TrackingNumber;
+import com.logistics.track17.mapper.ShopifyTrackingRegistrationMapper;
+import com.logistics.track17.mapper.TrackingNumberMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Shopify发货运单异步注册服务
+ * Webhook只负责把发货中的运单号写入 shopify_tracking_registration 并立即返回；
+ * 定时任务取出到期的待注册运单，复用批量导入流程（按40个一组并行注册17Track、批量写库），
+ * 之后以 tracking_numbers 中是否存在为准：存在的标记为DONE，其余指数退避重试，超过最大次数后标记为DEAD。
+ * 注册前逐条以条件UPDATE认领（next_attempt_at 推后一个租期），Redis锁过期后其他节点不会重复注册同一批运单；
+ * 节点宕机时租期到后自动重新可注册
+ */
+@Slf4j
+@Service
+public class ShopifyTrackingRegistrationService {
+
+    private static final String SOURCE_SHOPIFY = "shopify";
+    private static final String FLUSH_LOCK_KEY = "shopify:tracking:registration:lock";
+    private static final int LAST_ERROR_MAX_LENGTH = 500;
+
+    private final TrackingService trackingService;
+    private final ShopifyTrackingRegistrationMapper registrationMapper;
+    private final TrackingNumberMapper trackingNumberMapper;
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${shopify.tracking-registration.max-batch-size:400}")
+    private int maxBatchSize;
+
+    @Value("${shopify.tracking-registration.max-per-run:2000}")
+    private int maxPerRun;
+
+    @Value("${shopify.tracking-registration.max-attempts:14}")
+    private int maxAttempts;
+
+    @Value("${shopify.tracking-registration.retry-base-seconds:60}")
+    private long retryBaseSeconds;
+
+    @Value("${shopify.tracking-registration.lease-minutes:10}")
+    private int leaseMinutes;
+
+    @Value("${shopify.tracking-registration.retention-days:7}")
+    private int retentionDays;
+
+    private final String nodeId = UUID.randomUUID().toString();
+
+    public ShopifyTrackingRegistrationService(TrackingService trackingService,
+            ShopifyTrackingRegistrationMapper registrationMapper,
+            TrackingNumberMapper trackingNumberMapper,
+            RedisTemplate<String, Object> redisTemplate,
+            MeterRegistry meterRegistry) {
+        this.trackingService = trackingService;
+        this.registrationMapper = registrationMapper;
+        this.trackingNumberMapper = trackingNumberMapper;
+        this.redisTemplate = redisTemplate;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * 运单号写入待注册表（写库失败时抛出异常，由调用方重试）
+     * 同一运单号重复推送只保留一条，之前已放弃（DEAD）的重新开始注册
+     */
+    public void enqueue(String trackingNumber, Long orderId) {
+        LocalDateTime now = LocalDateTime.now();
+        ShopifyTrackingRegistration registration = new ShopifyTrackingRegistration();
+        registration.setTrackingNumber(trackingNumber);
+        registration.setOrderId(orderId);
+        registration.setNextAttemptAt(now);
+        registration.setCreatedAt(now);
+        registrationMapper.upsertPending(registration);
+    }
+
+    /**
+     * 定时批量注册到期的运单（默认每2秒）
+     * 多实例部署时通过Redis锁保证同一时刻只有一个节点注册
+     */
+    @Scheduled(fixedDelayString = "${shopify.tracking-registration.flush-interval:2000}", initialDelay = 10000)
+    public void flush() {
+        Boolean locked = redisTemplate.opsForValue().setIfAbsent(FLUSH_LOCK_KEY, nodeId,
+                leaseMinutes, TimeUnit.MINUTES);
+        if (!Boolean.TRUE.equals(locked)) {
+            return;
+        }
+
+        try {
+            // 每轮最多处理 max-per-run 条；失败的记录推迟到之后重试，本轮不会再次取到
+            int processed = 0;
+            while (processed < maxPerRun) {
+                LocalDateTime now = LocalDateTime.now();
+                List<ShopifyTrackingRegistration> due = registrationMapper.selectDue(now,
+                        Math.min(maxBatchSize, maxPerRun - processed));
+                if (due.isEmpty()) {
+                    break;
+                }
+                processed += due.size();
+
+                LocalDateTime leaseUntil = now.plusMinutes(leaseMinutes);
+                List<ShopifyTrackingRegistration> claimed = new ArrayList<>(due.size());
+                for (ShopifyTrackingRegistration registration : due) {
+                    if (registrationMapper.claim(registration.getId(), now, leaseUntil) > 0) {
+                        claimed.add(registration);
+                    }
+                }
+                if (!claimed.isEmpty()) {
+                    register(claimed);
+                }
+                if (due.size() < maxBatchSize) {
+                    break;
+                }
+            }
+        } catch (Exception e) {
+            log.error("Shopify tracking registration flush failed", e);
+        } finally {
+            if (nodeId.equals(redisTemplate.opsForValue().get(FLUSH_LOCK_KEY))) {
+                redisTemplate.delete(FLUSH_LOCK_KEY);
+            }
+        }
+    }
+
+    /**
+     * 清理已注册的记录（每小时）
+     */
+    @Scheduled(fixedDelayString = "${shopify.tracking-registration.purge-interval:3600000}", initialDelay = 600000)
+    public void purge() {
+        LocalDateTime before = LocalDateTime.now().minusDays(retentionDays);
+        int total = 0;
+        int deleted;
+        do {
+            deleted = registrationMapper.deleteProcessedBefore(before, 1000);
+            total += deleted;
+        } while (deleted == 1000);
+
+        if (total > 0) {
+            log.info("Purged {} registered Shopify tracking numbers before {}", total, before);
+        }
+    }
+
+    private void register(List<ShopifyTrackingRegistration> due) {
+        List<BatchImportItem> items = new ArrayList<>(due.size());
+        for (ShopifyTrackingRegistration registration : due) {
+            BatchImportItem item = new BatchImportItem();
+            item.setTrackingNumber(registration.getTrackingNumber());
+            item.setOrderId(registration.getOrderId());
+            item.setSource(SOURCE_SHOPIFY);
+            items.add(item);
+        }
+
+        BatchImportRequest request = new BatchImportRequest();
+        request.setItems(items);
+        String error = "17Track注册未成功";
+        try {
+            BatchImportResult result = trackingService.batchImport(request);
+            log.info("Registered Shopify tracking numbers: due={}, success={}, skipped/failed={}",
+                    due.size(), result.getSuccess(), result.getFailed());
+        } catch (Exception e) {
+            error = String.valueOf(e.getMessage());
+            log.error("Failed to register {} Shopify tracking numbers", due.size(), e);
+        }
+
+        // 以运单表为准：本次注册成功或之前已存在的都算完成
+        List<String> numbers = due.stream()
+                .map(ShopifyTrackingRegistration::getTrackingNumber)
+                .collect(Collectors.toList());
+        Set<String> existing = trackingNumberMapper.selectByTrackingNumbers(numbers).stream()
+                .map(TrackingNumber::getTrackingNumber)
+                .collect(Collectors.toSet());
+
+        LocalDateTime now = LocalDateTime.now();
+        List<Long> doneIds = new ArrayList<>();
+        for (ShopifyTrackingRegistration registration : due) {
+            if (existing.contains(registration.getTrackingNumber())) {
+                doneIds.add(registration.getId());
+            } else {
+                recordFailure(registration, error, now);
+            }
+        }
+        if (!doneIds.isEmpty()) {
+            registrationMapper.markDone(doneIds, now);
+            meterRegistry.counter("shopify.tracking.registration", "result", "registered")
+                    .increment(doneIds.size());
+        }
+    }
+
+    private void recordFailure(ShopifyTrackingRegistration registration, String error, LocalDateTime now) {
+        int attempts = (registration.getAttempts() != null ? registration.getAttempts() : 0) + 1;
+        registration.setAttempts(attempts);
+        registration.setLastError(StringUtils.abbreviate(error, LAST_ERROR_MAX_LENGTH));
+
+        if (attempts >= maxAttempts) {
+            registration.setStatus(ShopifyTrackingRegistration.STATUS_DEAD);
+            registration.setProcessedAt(now);
+            meterRegistry.counter("shopify.tracking.registration", "result", "dead").increment();
+            log.error("Shopify tracking number {} (order: {}) failed to register {} times, giving up: {}",
+                    registration.getTrackingNumber(), registration.getOrderId(), attempts, error);
+        } else {
+            // 指数退避：base * 2^(attempts-1)，最长6小时（注册额度按天重置）
+            long delaySeconds = Math.min(retryBaseSeconds << Math.min(attempts - 1, 16), 21600);
+            registration.setStatus(ShopifyTrackingRegistration.STATUS_PENDING);
+            registration.setNextAttemptAt(now.plusSeconds(delaySeconds));
+            meterRegistry.counter("shopify.tracking.registration", "result", "retry").increment();
+        }
+        registrationMapper.updateFailure(registration);
+    }
+}
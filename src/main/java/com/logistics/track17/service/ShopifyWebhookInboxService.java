@@ -0,0 +1,259 @@
+package com.logistics.track17.service;
+
+import com.logistics.track17.entity.ShopifyWebhookInbox;
+import com.logistics.track17.mapper.ShopifyWebhookInboxMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Shopify Webhook收件箱
+ * 控制器验签后只把原始报文写入 shopify_webhook_inbox（webhook_id唯一，重复投递直接忽略）并返回200；
+ * 定时任务按ID顺序取出待处理事件，按店铺分组交给线程池：不同店铺并行，同一店铺内严格按接收顺序串行处理。
+ * 处理前逐条以条件UPDATE认领（next_attempt_at 推后一个租期），只处理认领成功的事件：
+ * Redis锁过期后其他节点不会取到已认领的事件，也不会越过它们处理同一店铺的后续事件；节点宕机时租期到后自动重新可处理。
+ * 处理失败的事件指数退避重试，退避期间该店铺的后续事件暂停处理，超过最大次数后标记为DEAD
+ */
+@Slf4j
+@Service
+public class ShopifyWebhookInboxService {
+
+    private static final String DISPATCH_LOCK_KEY = "shopify:webhook:inbox:lock";
+    private static final int LAST_ERROR_MAX_LENGTH = 500;
+
+    private final ShopifyWebhookInboxMapper inboxMapper;
+    private final ShopifyWebhookProcessor processor;
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final Executor webhookExecutor;
+
+    @Value("${shopify.webhook.inbox.enabled:true}")
+    private boolean enabled;
+
+    @Value("${shopify.webhook.inbox.batch-size:200}")
+    private int batchSize;
+
+    @Value("${shopify.webhook.inbox.max-per-run:5000}")
+    private int maxPerRun;
+
+    @Value("${shopify.webhook.inbox.max-attempts:8}")
+    private int maxAttempts;
+
+    @Value("${shopify.webhook.inbox.retry-base-seconds:30}")
+    private long retryBaseSeconds;
+
+    @Value("${shopify.webhook.inbox.lease-minutes:10}")
+    private int leaseMinutes;
+
+    @Value("${shopify.webhook.inbox.retention-days:7}")
+    private int retentionDays;
+
+    private final String nodeId = UUID.randomUUID().toString();
+
+    public ShopifyWebhookInboxService(ShopifyWebhookInboxMapper inboxMapper,
+            ShopifyWebhookProcessor processor,
+            RedisTemplate<String, Object> redisTemplate,
+            @Qualifier("webhookExecutor") Executor webhookExecutor) {
+        this.inboxMapper = inboxMapper;
+        this.processor = processor;
+        this.redisTemplate = redisTemplate;
+        this.webhookExecutor = webhookExecutor;
+    }
+
+    /**
+     * 写入收件箱
+     *
+     * @param webhookId X-Shopify-Webhook-Id（缺失时生成随机ID，无法去重）
+     * @return true表示新事件，false表示重复投递
+     */
+    public boolean accept(String webhookId, String topic, String shopDomain, String payload) {
+        LocalDateTime now = LocalDateTime.now();
+        ShopifyWebhookInbox event = new ShopifyWebhookInbox();
+        event.setWebhookId(StringUtils.isNotBlank(webhookId) ? webhookId : "local-" + UUID.randomUUID());
+        event.setTopic(topic);
+        event.setShopDomain(shopDomain);
+        event.setPayload(payload);
+        event.setNextAttemptAt(now);
+        event.setReceivedAt(now);
+
+        boolean inserted = inboxMapper.insertIgnore(event) > 0;
+        if (!inserted) {
+            log.info("Duplicate webhook delivery ignored: {} ({}) from: {}", webhookId, topic, shopDomain);
+        }
+        return inserted;
+    }
+
+    /**
+     * 定时处理收件箱（默认每秒）
+     * 多实例部署时通过Redis锁保证同一时刻只有一个节点分发，从而保证店铺内顺序
+     */
+    @Scheduled(fixedDelayString = "${shopify.webhook.inbox.poll-interval:1000}", initialDelay = 15000)
+    public void dispatch() {
+        if (!enabled) {
+            return;
+        }
+
+        Boolean locked = redisTemplate.opsForValue().setIfAbsent(DISPATCH_LOCK_KEY, nodeId,
+                leaseMinutes, TimeUnit.MINUTES);
+        if (!Boolean.TRUE.equals(locked)) {
+            return;
+        }
+
+        int processed = 0;
+        try {
+            while (processed < maxPerRun) {
+                LocalDateTime now = LocalDateTime.now();
+                List<ShopifyWebhookInbox> events = inboxMapper.selectProcessable(now,
+                        Math.min(batchSize, maxPerRun - processed));
+                if (events.isEmpty()) {
+                    break;
+                }
+
+                // 按店铺分组（组内保持ID顺序），各店铺并行处理
+                Map<String, List<ShopifyWebhookInbox>> byShop = claim(events, now);
+                List<CompletableFuture<Void>> futures = byShop.values().stream()
+                        .map(shopEvents -> CompletableFuture.runAsync(() -> processShop(shopEvents), webhookExecutor))
+                        .collect(Collectors.toList());
+                CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).join();
+
+                processed += events.size();
+                if (events.size() < batchSize) {
+                    break;
+                }
+            }
+        } catch (Exception e) {
+            log.error("Shopify webhook inbox dispatch failed", e);
+        } finally {
+            if (nodeId.equals(redisTemplate.opsForValue().get(DISPATCH_LOCK_KEY))) {
+                redisTemplate.delete(DISPATCH_LOCK_KEY);
+            }
+        }
+
+        if (processed > 0) {
+            log.debug("Shopify webhook inbox dispatched {} events", processed);
+        }
+    }
+
+    /**
+     * 清理已处理的事件（每小时）
+     */
+    @Scheduled(fixedDelayString = "${shopify.webhook.inbox.purge-interval:3600000}", initialDelay = 600000)
+    public void purge() {
+        LocalDateTime before = LocalDateTime.now().minusDays(retentionDays);
+        int total = 0;
+        int deleted;
+        do {
+            deleted = inboxMapper.deleteProcessedBefore(before, 1000);
+            total += deleted;
+        } while (deleted == 1000);
+
+        if (total > 0) {
+            log.info("Purged {} processed Shopify webhook events before {}", total, before);
+        }
+    }
+
+    /**
+     * 按ID顺序逐条认领事件并按店铺分组
+     * 某店铺有事件认领失败（已被其他节点认领）时，该店铺之后的事件本轮不处理，已认领的立即释放
+     */
+    private Map<String, List<ShopifyWebhookInbox>> claim(List<ShopifyWebhookInbox> events, LocalDateTime now) {
+        LocalDateTime leaseUntil = LocalDateTime.now().plusMinutes(leaseMinutes);
+        Map<String, List<ShopifyWebhookInbox>> byShop = new LinkedHashMap<>();
+        Set<String> blockedShops = new HashSet<>();
+        List<Long> releaseIds = new ArrayList<>();
+        for (ShopifyWebhookInbox event : events) {
+            if (blockedShops.contains(event.getShopDomain())) {
+                continue;
+            }
+            if (inboxMapper.claim(event.getId(), now, leaseUntil) == 0) {
+                blockedShops.add(event.getShopDomain());
+                List<ShopifyWebhookInbox> claimed = byShop.remove(event.getShopDomain());
+                if (claimed != null) {
+                    claimed.forEach(e -> releaseIds.add(e.getId()));
+                }
+                continue;
+            }
+            byShop.computeIfAbsent(event.getShopDomain(), k -> new ArrayList<>()).add(event);
+        }
+        if (!releaseIds.isEmpty()) {
+            inboxMapper.releaseClaims(releaseIds, now);
+        }
+        if (!blockedShops.isEmpty()) {
+            log.warn("Shopify webhook events already claimed by another node, skipped shops: {}", blockedShops);
+        }
+        return byShop;
+    }
+
+    /**
+     * 串行处理同一店铺的事件，遇到失败即停止（后续事件等失败事件重试成功或进入DEAD后再处理）
+     * 停止后未处理的事件释放认领，仍排在失败事件之后等待
+     */
+    private void processShop(List<ShopifyWebhookInbox> shopEvents) {
+        List<Long> doneIds = new ArrayList<>(shopEvents.size());
+        int handled = 0;
+        try {
+            for (ShopifyWebhookInbox event : shopEvents) {
+                try {
+                    processor.process(event);
+                    doneIds.add(event.getId());
+                    handled++;
+                } catch (Exception e) {
+                    recordFailure(event, e);
+                    handled++;
+                    if (!ShopifyWebhookInbox.STATUS_DEAD.equals(event.getStatus())) {
+                        break;
+                    }
+                }
+            }
+        } finally {
+            LocalDateTime now = LocalDateTime.now();
+            if (!doneIds.isEmpty()) {
+                inboxMapper.markDone(doneIds, now);
+            }
+            if (handled < shopEvents.size()) {
+                inboxMapper.releaseClaims(shopEvents.subList(handled, shopEvents.size()).stream()
+                        .map(ShopifyWebhookInbox::getId)
+                        .collect(Collectors.toList()), now);
+            }
+        }
+    }
+
+    private void recordFailure(ShopifyWebhookInbox event, Exception e) {
+        int attempts = (event.getAttempts() != null ? event.getAttempts() : 0) + 1;
+        LocalDateTime now = LocalDateTime.now();
+        event.setAttempts(attempts);
+        event.setLastError(StringUtils.abbreviate(String.valueOf(e.getMessage()), LAST_ERROR_MAX_LENGTH));
+
+        if (attempts >= maxAttempts) {
+            event.setStatus(ShopifyWebhookInbox.STATUS_DEAD);
+            event.setProcessedAt(now);
+            log.error("Shopify webhook {} ({}) from {} failed {} times, giving up",
+                    event.getWebhookId(), event.getTopic(), event.getShopDomain(), attempts, e);
+        } else {
+            // 指数退避：base * 2^(attempts-1)，最长1小时
+            long delaySeconds = Math.min(retryBaseSeconds << Math.min(attempts - 1, 16), 3600);
+            event.setStatus(ShopifyWebhookInbox.STATUS_PENDING);
+            event.setNextAttemptAt(now.plusSeconds(delaySeconds));
+            log.warn("Shopify webhook {} ({}) from {} failed (attempt {}), retry in {}s: {}",
+                    event.getWebhookId(), event.getTopic(), event.getShopDomain(), attempts, delaySeconds,
+                    e.getMessage());
+        }
+        inboxMapper.updateFailure(event);
+    }
+}
@@ -0,0 +1,265 @@
+package com.logistics.track17.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.logistics.track17.entity.Order;
+import com.logistics.track17.entity.Shop;
+import com.logistics.track17.entity.ShopifyWebhookInbox;
+import com.logistics.track17.enums.AlertType;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Shopify Webhook事件处理器
+ * 由收件箱后台任务调用，按主题解析原始报文并更新店铺/订单或发送通知；
+ * 处理失败时抛出异常，由收件箱退避重试
+ */
+@Slf4j
+@Service
+public class ShopifyWebhookProcessor {
+
+    public static final String TOPIC_SHOP_UPDATE = "shop/update";
+    public static final String TOPIC_APP_UNINSTALLED = "app/uninstalled";
+    public static final String TOPIC_ORDERS_CREATE = "orders/create";
+    public static final String TOPIC_ORDERS_UPDATED = "orders/updated";
+    public static final String TOPIC_DISPUTES_CREATE = "disputes/create";
+    public static final String TOPIC_DISPUTES_UPDATE = "disputes/update";
+
+    private final ShopService shopService;
+    private final ShopSyncTimeService shopSyncTimeService;
+    private final OrderService orderService;
+    private final ShopifyTrackingRegistrationService trackingRegistrationService;
+    private final DingtalkNotificationService notificationService;
+    private final ObjectMapper objectMapper;
+
+    public ShopifyWebhookProcessor(ShopService shopService,
+            ShopSyncTimeService shopSyncTimeService,
+            OrderService orderService,
+            ShopifyTrackingRegistrationService trackingRegistrationService,
+            DingtalkNotificationService notificationService,
+            ObjectMapper objectMapper) {
+        this.shopService = shopService;
+        this.shopSyncTimeService = shopSyncTimeService;
+        this.orderService = orderService;
+        this.trackingRegistrationService = trackingRegistrationService;
+        this.notificationService = notificationService;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * 处理一条收件箱事件
+     */
+    public void process(ShopifyWebhookInbox event) throws Exception {
+        JsonNode data = objectMapper.readTree(event.getPayload());
+        String shopDomain = event.getShopDomain();
+
+        switch (event.getTopic()) {
+            case TOPIC_SHOP_UPDATE:
+                handleShopUpdate(shopDomain, data);
+                break;
+            case TOPIC_APP_UNINSTALLED:
+                handleAppUninstalled(shopDomain);
+                break;
+            case TOPIC_ORDERS_CREATE:
+                handleOrdersCreate(shopDomain, data, event.getPayload());
+                break;
+            case TOPIC_ORDERS_UPDATED:
+                handleOrdersUpdated(shopDomain, data, event.getPayload());
+                break;
+            case TOPIC_DISPUTES_CREATE:
+                handleDispute(shopDomain, data, false);
+                break;
+            case TOPIC_DISPUTES_UPDATE:
+                handleDispute(shopDomain, data, true);
+                break;
+            default:
+                log.warn("Unsupported webhook topic: {} from: {}", event.getTopic(), shopDomain);
+        }
+    }
+
+    /**
+     * 店铺信息更新
+     * 缓存中的店铺只用于定位ID；写库时只带本次变更的字段，避免用可能过期的缓存副本覆盖令牌、启用状态等
+     */
+    private void handleShopUpdate(String shopDomain, JsonNode shopData) {
+        Shop shop = shopService.getByShopDomain(shopDomain);
+        if (shop == null) {
+            log.warn("Shop not found for domain: {}", shopDomain);
+            return;
+        }
+
+        Shop changes = new Shop();
+        changes.setId(shop.getId());
+        if (shopData.has("name")) {
+            changes.setShopName(shopData.get("name").asText());
+        }
+        if (shopData.has("email")) {
+            // 可以添加email字段到Shop实体
+            log.info("Shop email: {}", shopData.get("email").asText());
+        }
+        if (shopData.has("iana_timezone")) {
+            changes.setTimezone(shopData.get("iana_timezone").asText());
+        }
+        if (shopData.has("domain")) {
+            changes.setStoreUrl("https://" + shopData.get("domain").asText());
+        }
+
+        changes.setLastSyncTime(LocalDateTime.now());
+        shopService.update(changes);
+
+        log.info("Successfully updated shop info for: {}", shopDomain);
+    }
+
+    /**
+     * App卸载：标记店铺失效并发送钉钉通知（只写状态字段，不回写缓存副本）
+     */
+    private void handleAppUninstalled(String shopDomain) {
+        Shop shop = shopService.getByShopDomain(shopDomain);
+        if (shop == null) {
+            log.warn("Shop not found for domain: {}", shopDomain);
+            return;
+        }
+
+        Shop changes = new Shop();
+        changes.setId(shop.getId());
+        changes.setConnectionStatus("invalid");
+        changes.setIsActive(false);
+        changes.setLastSyncTime(LocalDateTime.now());
+        shopService.update(changes);
+
+        log.info("Marked shop as uninstalled: {}", shopDomain);
+
+        try {
+            String content = notificationService.formatAppUninstalledMessage(
+                    shop.getShopName(), shopDomain);
+            notificationService.sendAlert(AlertType.APP_UNINSTALLED,
+                    "应用被卸载 - " + shopDomain, content,
+                    shop.getId(), "WEBHOOK",
+                    "APP_UNINSTALLED:" + shop.getId());
+        } catch (Exception notifyEx) {
+            log.error("发送应用卸载通知失败: {}", shopDomain, notifyEx);
+        }
+    }
+
+    /**
+     * 订单创建
+     */
+    private void handleOrdersCreate(String shopDomain, JsonNode orderData, String payload) {
+        Shop shop = shopService.getByShopDomain(shopDomain);
+        if (shop == null) {
+            log.warn("Shop not found for domain: {}", shopDomain);
+            return;
+        }
+
+        Order order = orderService.saveOrderFromWebhook(shop, orderData, payload);
+
+        log.info("Order synced successfully: {} (ID: {}) for shop: {}",
+                order.getOrderNumber(), order.getId(), shopDomain);
+
+        // 最后同步时间合并后定时批量写入
+        shopSyncTimeService.record(shop.getId());
+    }
+
+    /**
+     * 订单更新：保存订单，发货运单写入待注册表异步批量注册
+     */
+    private void handleOrdersUpdated(String shopDomain, JsonNode orderData, String payload) {
+        Shop shop = shopService.getByShopDomain(shopDomain);
+        if (shop == null) {
+            log.warn("Shop not found for domain: {}", shopDomain);
+            return;
+        }
+
+        String orderNumber = orderData.has("order_number") ? orderData.get("order_number").asText() : "unknown";
+        Long orderId = orderData.has("id") ? orderData.get("id").asLong() : null;
+        String fulfillmentStatus = orderData.has("fulfillment_status")
+                ? orderData.get("fulfillment_status").asText()
+                : null;
+
+        log.info("Order updated: {} (ID: {}, Status: {}) for shop: {}",
+                orderNumber, orderId, fulfillmentStatus, shopDomain);
+
+        Order order = orderService.saveOrderFromWebhook(shop, orderData, payload);
+
+        // 运单号写入待注册表；写库失败时抛出异常，事件保持待处理状态由收件箱退避重试（订单写入是幂等的）
+        int queued = 0;
+        for (String trackingNumber : extractTrackingNumbers(orderData)) {
+            trackingRegistrationService.enqueue(trackingNumber, order.getId());
+            queued++;
+        }
+        if (queued > 0) {
+            log.info("Queued {} tracking numbers for registration, order: {}", queued, orderNumber);
+        }
+
+        shopSyncTimeService.record(shop.getId());
+    }
+
+    /**
+     * 支付争议创建/更新：发送钉钉通知（去重键区分创建和状态变更）
+     */
+    private void handleDispute(String shopDomain, JsonNode disputeData, boolean update) {
+        Shop shop = shopService.getByShopDomain(shopDomain);
+        String shopName = shop != null ? shop.getShopName() : shopDomain;
+        Long shopId = shop != null ? shop.getId() : null;
+
+        String amount = disputeData.has("amount") ? disputeData.get("amount").asText() : "未知";
+        String currency = disputeData.has("currency") ? disputeData.get("currency").asText() : "";
+        String reason = disputeData.has("reason") ? disputeData.get("reason").asText() : "未知";
+        String type = disputeData.has("type") ? disputeData.get("type").asText() : "dispute";
+        String status = disputeData.has("status") ? disputeData.get("status").asText() : "unknown";
+        String evidenceDueBy = disputeData.has("evidence_due_by") ? disputeData.get("evidence_due_by").asText()
+                : null;
+        long disputeId = disputeData.has("id") ? disputeData.get("id").asLong() : 0;
+        String orderId = disputeData.has("order_id") ? disputeData.get("order_id").asText() : null;
+
+        String content = notificationService.formatDisputeMessage(
+                shopName, amount, currency, reason, type, status, orderId, evidenceDueBy);
+        if (update) {
+            notificationService.sendAlert(AlertType.DISPUTE,
+                    "⚠️ 争议状态更新 - " + shopName, content,
+                    shopId, "WEBHOOK",
+                    "DISPUTE_UPDATE:" + disputeId + ":" + status);
+            log.info("Dispute update notification sent for: {}, disputeId: {}, status: {}",
+                    shopDomain, disputeId, status);
+        } else {
+            notificationService.sendAlert(AlertType.DISPUTE,
+                    "🚨 支付争议 - " + shopName, content,
+                    shopId, "WEBHOOK",
+                    "DISPUTE_CREATE:" + disputeId);
+            log.info("Dispute create notification sent for: {}, disputeId: {}", shopDomain, disputeId);
+        }
+    }
+
+    /**
+     * 提取订单所有发货记录中的运单号（去重）
+     * 同时读取 tracking_number 和 tracking_numbers（一个发货可能有多个运单号）
+     */
+    private Set<String> extractTrackingNumbers(JsonNode orderData) {
+        Set<String> trackingNumbers = new LinkedHashSet<>();
+        JsonNode fulfillments = orderData.get("fulfillments");
+        if (fulfillments == null || !fulfillments.isArray()) {
+            return trackingNumbers;
+        }
+        for (JsonNode fulfillment : fulfillments) {
+            addTrackingNumber(trackingNumbers, fulfillment.get("tracking_number"));
+            JsonNode numbers = fulfillment.get("tracking_numbers");
+            if (numbers != null && numbers.isArray()) {
+                for (JsonNode number : numbers) {
+                    addTrackingNumber(trackingNumbers, number);
+                }
+            }
+        }
+        return trackingNumbers;
+    }
+
+    private void addTrackingNumber(Set<String> trackingNumbers, JsonNode node) {
+        if (node != null && node.isTextual() && StringUtils.isNotBlank(node.asText())) {
+            trackingNumbers.add(node.asText().trim());
+        }
+    }
+}
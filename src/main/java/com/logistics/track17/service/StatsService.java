@@ -1,107 +1,145 @@
 package com.logistics.track17.service;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import com.logistics.track17.dto.DashboardStatsResponse;
+import com.logistics.track17.dto.ShopOrderStatsDTO;
+import com.logistics.track17.dto.TrendStatsResponse;
 import com.logistics.track17.entity.NotificationLog;
 import com.logistics.track17.entity.Shop;
+import com.logistics.track17.entity.ShopDailyOrderStats;
+import com.logistics.track17.exception.BusinessException;
 import com.logistics.track17.mapper.NotificationLogMapper;
-import com.logistics.track17.mapper.OrderMapper;
+import com.logistics.track17.mapper.ShopDailyOrderStatsMapper;
 import com.logistics.track17.mapper.ShopMapper;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
+import java.time.DayOfWeek;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 /**
- * 统计服务 - 首页店铺概览 + 告警
+ * 统计服务 - 首页店铺概览 + 告警 + 订单趋势
  */
 @Slf4j
 @Service
 public class StatsService {
 
     private final ShopMapper shopMapper;
-    private final OrderMapper orderMapper;
+    private final ShopDailyOrderStatsMapper shopDailyOrderStatsMapper;
     private final NotificationLogMapper notificationLogMapper;
 
-    private static final DateTimeFormatter DATE_FMT = DateTimeFormatter.ofPattern("yyyy-MM-dd");
     private static final DateTimeFormatter DATETIME_FMT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
 
+    private static final String DASHBOARD_CACHE_KEY = "dashboard";
+
+    private static final String GRANULARITY_DAY = "day";
+    private static final String GRANULARITY_WEEK = "week";
+    private static final int DEFAULT_TREND_DAYS = 30;
+
+    // 首页统计短时缓存（单key），过期后由第一个请求重新计算，其他并发请求等待同一结果
+    private final Cache<String, DashboardStatsResponse> dashboardCache;
+
+    // 趋势查询允许的最大天数
+    private final int trendMaxDays;
+
     public StatsService(ShopMapper shopMapper,
-            OrderMapper orderMapper,
-            NotificationLogMapper notificationLogMapper) {
+            ShopDailyOrderStatsMapper shopDailyOrderStatsMapper,
+            NotificationLogMapper notificationLogMapper,
+            @Value("${stats.dashboard.cache-seconds:30}") long dashboardCacheSeconds,
+            @Value("${stats.trend.max-days:400}") int trendMaxDays) {
         this.shopMapper = shopMapper;
-        this.orderMapper = orderMapper;
+        this.shopDailyOrderStatsMapper = shopDailyOrderStatsMapper;
         this.notificationLogMapper = notificationLogMapper;
+        this.trendMaxDays = trendMaxDays;
+        this.dashboardCache = Caffeine.newBuilder()
+                .maximumSize(1)
+                .expireAfterWrite(dashboardCacheSeconds, TimeUnit.SECONDS)
+                .build();
     }
 
     /**
-     * 获取首页统计数据
+     * 获取首页统计数据（短时缓存，并发请求共享同一次计算）
      */
     public DashboardStatsResponse getDashboardStats() {
-        log.info("Getting dashboard stats");
+        return dashboardCache.get(DASHBOARD_CACHE_KEY, key -> buildDashboardStats());
+    }
+
+    /**
+     * 计算首页统计数据
+     * 订单统计读取店铺每日汇总表，告警关联店铺批量查询
+     */
+    private DashboardStatsResponse buildDashboardStats() {
+        log.info("Building dashboard stats");
 
         DashboardStatsResponse response = new DashboardStatsResponse();
 
         // 店铺统计
-        Long totalShops = shopMapper.count(null);
-        List<Shop> activeShopList = shopMapper.findByIsActive(true);
-        response.setTotalShops(totalShops != null ? totalShops : 0L);
-        response.setActiveShops((long) activeShopList.size());
-
-        // 全局订单统计
-        Long totalOrders = orderMapper.count(null);
-        response.setTotalOrders(totalOrders != null ? totalOrders : 0L);
-
-        String today = LocalDate.now().format(DATE_FMT);
-        String tomorrow = LocalDate.now().plusDays(1).format(DATE_FMT);
-        Long todayOrders = orderMapper.countByDateRange(null, today, tomorrow);
-        response.setTodayOrders(todayOrders != null ? todayOrders : 0L);
-
-        // 全局销售额
-        BigDecimal totalRevenue = orderMapper.sumRevenueByDateRange(null, null, null);
-        response.setTotalRevenue(totalRevenue != null ? totalRevenue : BigDecimal.ZERO);
-        BigDecimal todayRevenue = orderMapper.sumRevenueByDateRange(null, today, tomorrow);
-        response.setTodayRevenue(todayRevenue != null ? todayRevenue : BigDecimal.ZERO);
-
-        // 店铺概览列表
-        List<DashboardStatsResponse.ShopOverview> shopOverviews = new ArrayList<>();
         List<Shop> allShops = shopMapper.selectAll();
-        log.info("selectAll returned {} shops, count returned {}", allShops.size(), totalShops);
+        long activeShops = allShops.stream().filter(shop -> Boolean.TRUE.equals(shop.getIsActive())).count();
+        response.setTotalShops((long) allShops.size());
+        response.setActiveShops(activeShops);
+
+        // 订单统计：按店铺分组，同时统计今日订单
+        LocalDate today = LocalDate.now();
+        Map<Long, ShopOrderStatsDTO> orderStats = new HashMap<>();
+        long totalOrders = 0;
+        long todayOrders = 0;
+        BigDecimal totalRevenue = BigDecimal.ZERO;
+        BigDecimal todayRevenue = BigDecimal.ZERO;
+        for (ShopOrderStatsDTO stats : shopDailyOrderStatsMapper.selectShopOrderStats(today, today.plusDays(1))) {
+            orderStats.put(stats.getShopId(), stats);
+            totalOrders += stats.getOrderCount();
+            todayOrders += stats.getPeriodOrderCount();
+            totalRevenue = totalRevenue.add(stats.getRevenue());
+            todayRevenue = todayRevenue.add(stats.getPeriodRevenue());
+        }
+        response.setTotalOrders(totalOrders);
+        response.setTodayOrders(todayOrders);
+        response.setTotalRevenue(totalRevenue);
+        response.setTodayRevenue(todayRevenue);
 
+        // 店铺概览列表
+        List<DashboardStatsResponse.ShopOverview> shopOverviews = new ArrayList<>(allShops.size());
         for (Shop shop : allShops) {
-            try {
-                DashboardStatsResponse.ShopOverview overview = new DashboardStatsResponse.ShopOverview();
-                overview.setId(shop.getId());
-                overview.setShopName(shop.getShopName());
-                overview.setShopDomain(shop.getShopDomain());
-                overview.setPlatform(shop.getPlatform());
-                overview.setPlanDisplayName(shop.getPlanDisplayName());
-                overview.setCurrency(shop.getCurrency());
-                overview.setConnectionStatus(shop.getConnectionStatus());
-                overview.setIsActive(shop.getIsActive());
-
-                Long shopOrderCount = orderMapper.count(shop.getId());
-                overview.setOrderCount(shopOrderCount != null ? shopOrderCount : 0L);
-
-                BigDecimal shopRevenue = orderMapper.sumRevenueByDateRange(shop.getId(), null, null);
-                overview.setRevenue(shopRevenue != null ? shopRevenue : BigDecimal.ZERO);
-
-                if (shop.getLastSyncTime() != null) {
-                    overview.setLastSyncTime(shop.getLastSyncTime().format(DATETIME_FMT));
-                }
-
-                shopOverviews.add(overview);
-            } catch (Exception e) {
-                log.error("Error building shop overview for shopId={}: {}", shop.getId(), e.getMessage(), e);
+            DashboardStatsResponse.ShopOverview overview = new DashboardStatsResponse.ShopOverview();
+            overview.setId(shop.getId());
+            overview.setShopName(shop.getShopName());
+            overview.setShopDomain(shop.getShopDomain());
+            overview.setPlatform(shop.getPlatform());
+            overview.setPlanDisplayName(shop.getPlanDisplayName());
+            overview.setCurrency(shop.getCurrency());
+            overview.setConnectionStatus(shop.getConnectionStatus());
+            overview.setIsActive(shop.getIsActive());
+
+            ShopOrderStatsDTO stats = orderStats.get(shop.getId());
+            overview.setOrderCount(stats != null ? stats.getOrderCount() : 0L);
+            overview.setRevenue(stats != null ? stats.getRevenue() : BigDecimal.ZERO);
+
+            if (shop.getLastSyncTime() != null) {
+                overview.setLastSyncTime(shop.getLastSyncTime().format(DATETIME_FMT));
             }
+
+            shopOverviews.add(overview);
         }
         response.setShops(shopOverviews);
 
         // 最近告警
         List<NotificationLog> recentLogs = notificationLogMapper.findRecent(0, 20);
+        Map<Long, Shop> alertShops = loadAlertShops(recentLogs, allShops);
         List<DashboardStatsResponse.AlertItem> alertItems = new ArrayList<>();
         long pendingCount = 0;
 
@@ -121,11 +159,9 @@ public class StatsService {
             }
 
             // 关联店铺名
-            if (logEntry.getShopId() != null) {
-                Shop shop = shopMapper.selectById(logEntry.getShopId());
-                if (shop != null) {
-                    item.setShopName(shop.getShopName() != null ? shop.getShopName() : shop.getShopDomain());
-                }
+            Shop shop = logEntry.getShopId() != null ? alertShops.get(logEntry.getShopId()) : null;
+            if (shop != null) {
+                item.setShopName(shop.getShopName() != null ? shop.getShopName() : shop.getShopDomain());
             }
 
             alertItems.add(item);
@@ -137,7 +173,130 @@ public class StatsService {
         response.setRecentAlerts(alertItems);
         response.setPendingAlerts(pendingCount);
 
-        log.info("Dashboard stats retrieved successfully");
+        log.info("Dashboard stats built: {} shops, {} orders", allShops.size(), totalOrders);
         return response;
     }
+
+    /**
+     * 订单/销售额趋势（读取店铺每日汇总表）
+     *
+     * @param shopId      店铺ID（为空时统计全部店铺）
+     * @param granularity day / week（为空时按天）
+     * @param startDate   开始日期（含，为空时取结束日期前30天）
+     * @param endDate     结束日期（不含，为空时取明天，即包含今天）
+     */
+    public TrendStatsResponse getTrend(Long shopId, String granularity, LocalDate startDate, LocalDate endDate) {
+        String unit = granularity != null ? granularity : GRANULARITY_DAY;
+        if (!GRANULARITY_DAY.equals(unit) && !GRANULARITY_WEEK.equals(unit)) {
+            throw BusinessException.of(400, "不支持的时间粒度: " + granularity);
+        }
+        LocalDate end = endDate != null ? endDate : LocalDate.now().plusDays(1);
+        LocalDate start = startDate != null ? startDate : end.minusDays(DEFAULT_TREND_DAYS);
+        if (!start.isBefore(end)) {
+            throw BusinessException.of(400, "开始日期必须早于结束日期");
+        }
+        if (start.plusDays(trendMaxDays).isBefore(end)) {
+            throw BusinessException.of(400, "统计范围不能超过" + trendMaxDays + "天");
+        }
+        boolean weekly = GRANULARITY_WEEK.equals(unit);
+
+        // 时间桶：按周时从开始日期所在周的周一起
+        List<String> buckets = new ArrayList<>();
+        Map<LocalDate, Integer> bucketIndex = new HashMap<>();
+        LocalDate bucket = weekly ? start.with(DayOfWeek.MONDAY) : start;
+        while (bucket.isBefore(end)) {
+            bucketIndex.put(bucket, buckets.size());
+            buckets.add(bucket.toString());
+            bucket = weekly ? bucket.plusWeeks(1) : bucket.plusDays(1);
+        }
+
+        // 店铺ID -> 币种 -> 序列；全局按币种汇总
+        Map<Long, Map<String, TrendStatsResponse.CurrencySeries>> shopSeries = new LinkedHashMap<>();
+        Map<String, TrendStatsResponse.CurrencySeries> totals = new TreeMap<>();
+        for (ShopDailyOrderStats row : shopDailyOrderStatsMapper.selectTrend(shopId, start, end, weekly)) {
+            Integer index = bucketIndex.get(row.getStatDate());
+            if (index == null) {
+                continue;
+            }
+            TrendStatsResponse.CurrencySeries series = shopSeries
+                    .computeIfAbsent(row.getShopId(), k -> new TreeMap<>())
+                    .computeIfAbsent(row.getCurrency(), currency -> newSeries(currency, buckets));
+            addPoint(series, index, row);
+            addPoint(totals.computeIfAbsent(row.getCurrency(), currency -> newSeries(currency, buckets)), index, row);
+        }
+
+        Map<Long, Shop> shops = shopSeries.isEmpty()
+                ? Collections.emptyMap()
+                : shopMapper.selectByIds(new ArrayList<>(shopSeries.keySet())).stream()
+                        .collect(Collectors.toMap(Shop::getId, Function.identity()));
+        List<TrendStatsResponse.ShopTrend> shopTrends = new ArrayList<>(shopSeries.size());
+        for (Map.Entry<Long, Map<String, TrendStatsResponse.CurrencySeries>> entry : shopSeries.entrySet()) {
+            TrendStatsResponse.ShopTrend trend = new TrendStatsResponse.ShopTrend();
+            trend.setShopId(entry.getKey());
+            Shop shop = shops.get(entry.getKey());
+            if (shop != null) {
+                trend.setShopName(shop.getShopName());
+                trend.setShopDomain(shop.getShopDomain());
+                trend.setCurrency(shop.getCurrency());
+            }
+            trend.setSeries(new ArrayList<>(entry.getValue().values()));
+            trend.setOrderCount(trend.getSeries().stream()
+                    .mapToLong(TrendStatsResponse.CurrencySeries::getOrderCount)
+                    .sum());
+            shopTrends.add(trend);
+        }
+
+        TrendStatsResponse response = new TrendStatsResponse();
+        response.setGranularity(unit);
+        response.setStartDate(start.toString());
+        response.setEndDate(end.toString());
+        response.setBuckets(buckets);
+        response.setTotals(new ArrayList<>(totals.values()));
+        response.setShops(shopTrends);
+        return response;
+    }
+
+    private TrendStatsResponse.CurrencySeries newSeries(String currency, List<String> buckets) {
+        TrendStatsResponse.CurrencySeries series = new TrendStatsResponse.CurrencySeries();
+        series.setCurrency(currency);
+        series.setOrderCount(0L);
+        series.setRevenue(BigDecimal.ZERO);
+        List<TrendStatsResponse.Point> points = new ArrayList<>(buckets.size());
+        for (String date : buckets) {
+            TrendStatsResponse.Point point = new TrendStatsResponse.Point();
+            point.setDate(date);
+            point.setOrderCount(0L);
+            point.setRevenue(BigDecimal.ZERO);
+            points.add(point);
+        }
+        series.setPoints(points);
+        return series;
+    }
+
+    private void addPoint(TrendStatsResponse.CurrencySeries series, int index, ShopDailyOrderStats row) {
+        long orderCount = row.getOrderCount() != null ? row.getOrderCount() : 0;
+        BigDecimal revenue = row.getRevenue() != null ? row.getRevenue() : BigDecimal.ZERO;
+        TrendStatsResponse.Point point = series.getPoints().get(index);
+        point.setOrderCount(point.getOrderCount() + orderCount);
+        point.setRevenue(point.getRevenue().add(revenue));
+        series.setOrderCount(series.getOrderCount() + orderCount);
+        series.setRevenue(series.getRevenue().add(revenue));
+    }
+
+    /**
+     * 告警关联的店铺：优先使用已加载的店铺列表，不在列表中的（如已删除店铺）批量查询
+     */
+    private Map<Long, Shop> loadAlertShops(List<NotificationLog> logs, List<Shop> loadedShops) {
+        Map<Long, Shop> shops = loadedShops.stream()
+                .collect(Collectors.toMap(Shop::getId, Function.identity(), (a, b) -> a));
+        List<Long> missingIds = logs.stream()
+                .map(NotificationLog::getShopId)
+                .filter(id -> id != null && !shops.containsKey(id))
+                .distinct()
+                .collect(Collectors.toList());
+        if (!missingIds.isEmpty()) {
+            shopMapper.selectByIds(missingIds).forEach(shop -> shops.put(shop.getId(), shop));
+        }
+        return shops;
+    }
 }
@@ -0,0 +1,248 @@
+package com.logistics.track17.service;
+
+import com.logistics.track17.dto.CarrierLanePerformanceDTO;
+import com.logistics.track17.entity.TrackingNumber;
+import com.logistics.track17.enums.AlertType;
+import com.logistics.track17.mapper.TrackingNumberMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.util.DigestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 停滞运单检测
+ * 按主键游标分页扫描未终结运单，最新事件距今天数超过所在承运商线路签收时效p90的标记为停滞；
+ * 每轮只扫描固定页数，游标保存在Redis中，下一轮从上次位置继续，扫描到末尾后从头开始。
+ * 停滞运单按 (运单, 最新事件时间) 去重后放入待发送队列，攒满一批或一遍扫描结束时合并为一条钉钉通知
+ */
+@Slf4j
+@Service
+public class StuckParcelDetector {
+
+    private static final String LOCK_KEY = "tracking:stuck:lock";
+    private static final String CURSOR_KEY = "tracking:stuck:cursor";
+    private static final String PENDING_KEY = "tracking:stuck:pending";
+    private static final String ALERTED_KEY_PREFIX = "tracking:stuck:alerted:";
+
+    private final TrackingNumberMapper trackingNumberMapper;
+    private final CarrierPerformanceService carrierPerformanceService;
+    private final DingtalkNotificationService notificationService;
+    private final StringRedisTemplate stringRedisTemplate;
+
+    @Value("${tracking.stuck.enabled:true}")
+    private boolean enabled;
+
+    @Value("${tracking.stuck.page-size:500}")
+    private int pageSize;
+
+    @Value("${tracking.stuck.pages-per-run:5}")
+    private int pagesPerRun;
+
+    @Value("${tracking.stuck.stats-months:3}")
+    private int statsMonths;
+
+    @Value("${tracking.stuck.min-samples:20}")
+    private int minSamples;
+
+    @Value("${tracking.stuck.default-days:20}")
+    private int defaultDays;
+
+    @Value("${tracking.stuck.min-days:3}")
+    private int minDays;
+
+    @Value("${tracking.stuck.digest-size:50}")
+    private int digestSize;
+
+    @Value("${tracking.stuck.alert-ttl-days:30}")
+    private int alertTtlDays;
+
+    @Value("${tracking.stuck.lease-minutes:10}")
+    private int leaseMinutes;
+
+    private final String nodeId = UUID.randomUUID().toString();
+
+    public StuckParcelDetector(TrackingNumberMapper trackingNumberMapper,
+            CarrierPerformanceService carrierPerformanceService,
+            DingtalkNotificationService notificationService,
+            StringRedisTemplate stringRedisTemplate) {
+        this.trackingNumberMapper = trackingNumberMapper;
+        this.carrierPerformanceService = carrierPerformanceService;
+        this.notificationService = notificationService;
+        this.stringRedisTemplate = stringRedisTemplate;
+    }
+
+    /**
+     * 定时扫描一段运单（默认每分钟，每轮 pages-per-run * page-size 条）
+     * 多实例部署时通过Redis锁保证同一时刻只有一个节点扫描
+     */
+    @Scheduled(fixedDelayString = "${tracking.stuck.interval:60000}", initialDelay = 120000)
+    public void scan() {
+        if (!enabled) {
+            return;
+        }
+
+        Boolean locked = stringRedisTemplate.opsForValue().setIfAbsent(LOCK_KEY, nodeId,
+                leaseMinutes, TimeUnit.MINUTES);
+        if (!Boolean.TRUE.equals(locked)) {
+            return;
+        }
+
+        try {
+            Map<String, Integer> thresholds = loadThresholds();
+            long cursor = readCursor();
+            LocalDateTime now = LocalDateTime.now();
+            boolean passComplete = false;
+            int scanned = 0;
+            int flagged = 0;
+
+            for (int page = 0; page < pagesPerRun; page++) {
+                List<TrackingNumber> trackings = trackingNumberMapper.selectActiveAfterId(cursor, pageSize);
+                for (TrackingNumber tn : trackings) {
+                    if (checkStuck(tn, thresholds, now)) {
+                        flagged++;
+                    }
+                }
+                scanned += trackings.size();
+
+                if (trackings.size() < pageSize) {
+                    cursor = 0;
+                    passComplete = true;
+                } else {
+                    cursor = trackings.get(trackings.size() - 1).getId();
+                }
+                // 每页保存游标，中断后从该位置继续
+                stringRedisTemplate.opsForValue().set(CURSOR_KEY, String.valueOf(cursor));
+                if (passComplete) {
+                    break;
+                }
+            }
+
+            sendDigests(passComplete);
+
+            if (flagged > 0 || passComplete) {
+                log.info("停滞运单扫描: 扫描 {}, 新增停滞 {}, 游标 {}{}", scanned, flagged, cursor,
+                        passComplete ? "（本遍完成）" : "");
+            }
+        } catch (Exception e) {
+            log.error("停滞运单扫描失败", e);
+        } finally {
+            if (nodeId.equals(stringRedisTemplate.opsForValue().get(LOCK_KEY))) {
+                stringRedisTemplate.delete(LOCK_KEY);
+            }
+        }
+    }
+
+    /**
+     * 线路停滞阈值：样本数足够的线路取签收时效p90
+     */
+    private Map<String, Integer> loadThresholds() {
+        Map<String, Integer> thresholds = new HashMap<>();
+        for (CarrierLanePerformanceDTO lane : carrierPerformanceService.getLanePerformance(statsMonths,
+                null, null, null)) {
+            if (lane.getP90TransitDays() != null && lane.getTransitSampleCount() >= minSamples) {
+                thresholds.put(CarrierPerformanceService.laneKey(lane.getCarrierCode(),
+                        lane.getOriginCountry(), lane.getDestinationCountry()), lane.getP90TransitDays());
+            }
+        }
+        return thresholds;
+    }
+
+    /**
+     * 判断运单是否停滞，停滞且未提醒过时放入待发送队列
+     *
+     * @return 是否新增停滞提醒
+     */
+    private boolean checkStuck(TrackingNumber tn, Map<String, Integer> thresholds, LocalDateTime now) {
+        // 没有物流事件的运单按创建时间计算
+        LocalDateTime lastActivity = tn.getLatestEventTime() != null ? tn.getLatestEventTime() : tn.getCreatedAt();
+        if (lastActivity == null) {
+            return false;
+        }
+        long idleDays = Duration.between(lastActivity, now).toDays();
+        int threshold = Math.max(thresholds.getOrDefault(
+                CarrierPerformanceService.laneKey(tn.getCarrierCode(), tn.getOriginCountry(),
+                        tn.getDestinationCountry()),
+                defaultDays), minDays);
+        if (idleDays <= threshold) {
+            return false;
+        }
+
+        // 同一运单同一最新事件只提醒一次，有新事件后再次停滞会重新提醒
+        String alertedKey = ALERTED_KEY_PREFIX + tn.getId() + ":"
+                + lastActivity.atZone(ZoneId.systemDefault()).toEpochSecond();
+        Boolean first = stringRedisTemplate.opsForValue().setIfAbsent(alertedKey, "1",
+                alertTtlDays, TimeUnit.DAYS);
+        if (!Boolean.TRUE.equals(first)) {
+            return false;
+        }
+
+        stringRedisTemplate.opsForList().rightPush(PENDING_KEY, formatRow(tn, idleDays, threshold));
+        return true;
+    }
+
+    /**
+     * 发送停滞提醒：待发送队列每满一批发送一条，一遍扫描结束时发送剩余部分
+     */
+    private void sendDigests(boolean passComplete) {
+        Long size = stringRedisTemplate.opsForList().size(PENDING_KEY);
+        while (size != null && size > 0 && (size >= digestSize || passComplete)) {
+            List<String> rows = stringRedisTemplate.opsForList().range(PENDING_KEY, 0, digestSize - 1);
+            if (rows == null || rows.isEmpty()) {
+                break;
+            }
+
+            String content = formatDigest(rows);
+            // 发送后才出队；出队前中断重发时按内容去重
+            String dedupKey = "STUCK_PARCEL:" + DigestUtils.md5DigestAsHex(content.getBytes(StandardCharsets.UTF_8));
+            notificationService.sendAlert(AlertType.STUCK_PARCEL,
+                    "📦 运单停滞提醒 - " + rows.size() + " 个运单", content,
+                    null, "SCHEDULED", dedupKey);
+
+            stringRedisTemplate.opsForList().trim(PENDING_KEY, rows.size(), -1);
+            size = stringRedisTemplate.opsForList().size(PENDING_KEY);
+        }
+    }
+
+    private long readCursor() {
+        String value = stringRedisTemplate.opsForValue().get(CURSOR_KEY);
+        return StringUtils.isNumeric(value) ? Long.parseLong(value) : 0L;
+    }
+
+    private String formatRow(TrackingNumber tn, long idleDays, int threshold) {
+        String lane = StringUtils.defaultIfBlank(tn.getOriginCountry(), "?") + " → "
+                + StringUtils.defaultIfBlank(tn.getDestinationCountry(), "?");
+        return "| " + tn.getTrackingNumber()
+                + " | " + StringUtils.defaultIfBlank(tn.getCarrierCode(), "-")
+                + " | " + lane
+                + " | " + StringUtils.defaultIfBlank(tn.getTrackStatus(), "-")
+                + " | " + idleDays
+                + " | " + threshold + " |";
+    }
+
+    private String formatDigest(List<String> rows) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("## 📦 运单停滞提醒\n\n");
+        sb.append("以下 ").append(rows.size()).append(" 个运单最近物流事件距今已超过所在线路的签收时效p90：\n\n");
+        sb.append("| 运单号 | 承运商 | 线路 | 状态 | 停滞天数 | 阈值(天) |\n");
+        sb.append("|------|------|------|------|------|------|\n");
+        for (String row : rows) {
+            sb.append(row).append("\n");
+        }
+        sb.append("\n> 阈值取最近").append(statsMonths).append("个月该线路签收运单运输天数p90，样本不足")
+                .append(minSamples).append("个时按").append(defaultDays).append("天计。\n");
+        return sb.toString();
+    }
+}
@@ -0,0 +1,119 @@
+package com.logistics.track17.service;
+
+import com.logistics.track17.config.Track17Config;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 17Track每日额度统计
+ * 按自然日在Redis中累计注册/查询的运单数（多节点共享），调度任务在消耗额度前检查剩余额度；
+ * 当日用量同时以 track17.quota.used 指标暴露
+ */
+@Slf4j
+@Service
+public class Track17QuotaService {
+
+    public static final String TYPE_REGISTER = "register";
+    public static final String TYPE_QUERY = "query";
+
+    private static final String QUOTA_KEY_PREFIX = "track17:quota:";
+    private static final long QUOTA_KEY_EXPIRE_DAYS = 2;
+    private static final DateTimeFormatter DAY_FORMATTER = DateTimeFormatter.BASIC_ISO_DATE;
+
+    private final Track17Config config;
+    private final StringRedisTemplate stringRedisTemplate;
+
+    // 最近一次读写得到的当日用量，供指标采集使用（避免采集时访问Redis）
+    private final AtomicLong registerUsed = new AtomicLong();
+    private final AtomicLong queryUsed = new AtomicLong();
+
+    public Track17QuotaService(Track17Config config,
+            StringRedisTemplate stringRedisTemplate,
+            MeterRegistry meterRegistry) {
+        this.config = config;
+        this.stringRedisTemplate = stringRedisTemplate;
+
+        Gauge.builder("track17.quota.used", registerUsed, AtomicLong::get)
+                .tag("type", TYPE_REGISTER)
+                .description("17Track registrations used today")
+                .register(meterRegistry);
+        Gauge.builder("track17.quota.used", queryUsed, AtomicLong::get)
+                .tag("type", TYPE_QUERY)
+                .description("17Track tracking numbers queried today")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 记录注册消耗的额度
+     */
+    public void recordRegistrations(int count) {
+        record(TYPE_REGISTER, count, registerUsed);
+    }
+
+    /**
+     * 记录查询的运单数
+     */
+    public void recordQueries(int count) {
+        record(TYPE_QUERY, count, queryUsed);
+    }
+
+    /**
+     * 今日剩余注册额度（未配置上限时返回Long.MAX_VALUE）
+     */
+    public long remainingRegistrations() {
+        return remaining(TYPE_REGISTER, config.getDailyRegisterQuota(), registerUsed);
+    }
+
+    /**
+     * 今日剩余查询额度（未配置上限时返回Long.MAX_VALUE）
+     */
+    public long remainingQueries() {
+        return remaining(TYPE_QUERY, config.getDailyQueryQuota(), queryUsed);
+    }
+
+    private void record(String type, int count, AtomicLong used) {
+        if (count <= 0) {
+            return;
+        }
+        try {
+            String key = quotaKey(type);
+            Long total = stringRedisTemplate.opsForValue().increment(key, count);
+            if (total != null) {
+                used.set(total);
+                if (total == count) {
+                    // 当天第一次写入时设置过期
+                    stringRedisTemplate.expire(key, QUOTA_KEY_EXPIRE_DAYS, TimeUnit.DAYS);
+                }
+            }
+        } catch (Exception e) {
+            // 统计失败不影响业务调用
+            log.warn("Failed to record 17Track {} quota usage: {}", type, e.getMessage());
+        }
+    }
+
+    private long remaining(String type, Long limit, AtomicLong used) {
+        if (limit == null || limit <= 0) {
+            return Long.MAX_VALUE;
+        }
+        try {
+            String value = stringRedisTemplate.opsForValue().get(quotaKey(type));
+            used.set(value != null ? Long.parseLong(value) : 0);
+        } catch (Exception e) {
+            // Redis不可用时按最近一次已知用量计算
+            log.warn("Failed to read 17Track {} quota usage: {}", type, e.getMessage());
+        }
+        return Math.max(0, limit - used.get());
+    }
+
+    private String quotaKey(String type) {
+        return QUOTA_KEY_PREFIX + type + ":" + LocalDate.now().format(DAY_FORMATTER);
+    }
+}
@@ -8,13 +8,34 @@ import com.logistics.track17.dto.Track17RegisterResponse;
 import com.logistics.track17.dto.Track17QueryResponse;
 import com.logistics.track17.dto.Track17V2Response;
 import com.logistics.track17.exception.BusinessException;
+import com.logistics.track17.util.CircuitBreaker;
+import com.logistics.track17.util.TokenBucketRateLimiter;
+import com.logistics.track17.util.Track17V2StreamReader;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
 import okhttp3.*;
+import org.apache.commons.lang3.StringUtils;
 import org.springframework.stereotype.Service;
 
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.NoRouteToHostException;
+import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HexFormat;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 /**
  * 17Track API服务
@@ -26,16 +47,31 @@ public class Track17Service {
 
     private final Track17Config config;
     private final OkHttpClient httpClient;
+    private final TokenBucketRateLimiter rateLimiter;
+    private final CircuitBreaker circuitBreaker;
+    private final Track17QuotaService quotaService;
+    private final MeterRegistry meterRegistry;
+
+    private static final String OPERATION_REGISTER = "register";
+    private static final String OPERATION_QUERY = "query";
 
     private static final MediaType JSON_MEDIA_TYPE = MediaType.parse("application/json; charset=utf-8");
 
-    public Track17Service(Track17Config config) {
+    public Track17Service(Track17Config config, OkHttpClient track17HttpClient,
+            Track17QuotaService quotaService, MeterRegistry meterRegistry) {
         this.config = config;
-        this.httpClient = new OkHttpClient.Builder()
-                .connectTimeout(10, TimeUnit.SECONDS)
-                .readTimeout(10, TimeUnit.SECONDS)
-                .writeTimeout(10, TimeUnit.SECONDS)
-                .build();
+        this.httpClient = track17HttpClient;
+        this.quotaService = quotaService;
+        this.meterRegistry = meterRegistry;
+        // 所有17Track请求共用一个令牌桶，桶容量等于每秒限额
+        this.rateLimiter = new TokenBucketRateLimiter(config.getRateLimit(),
+                Math.max(1, config.getRateLimit().intValue()));
+        this.circuitBreaker = new CircuitBreaker(config.getCircuitFailureThreshold(),
+                config.getCircuitOpenSeconds());
+
+        Gauge.builder("track17.circuit.state", circuitBreaker, cb -> cb.getState().ordinal())
+                .description("17Track circuit breaker state (0=closed, 1=open, 2=half-open)")
+                .register(meterRegistry);
     }
 
     /**
@@ -52,6 +88,29 @@ public class Track17Service {
      * API: POST /track/v2/register
      */
     public Track17RegisterResponse registerTrackingBatch(List<Track17RegisterRequest> requests) {
+        Request request = buildRegisterRequest(requests);
+
+        try {
+            return execute(OPERATION_REGISTER, request, response -> handleRegisterResponse(response, requests.size()));
+        } catch (Exception e) {
+            throw wrapRegisterException(e);
+        }
+    }
+
+    /**
+     * 异步批量注册运单到17Track（最多40个）
+     * 限流等待和网络IO都不占用调用线程，结果在OkHttp回调线程中完成
+     */
+    public CompletableFuture<Track17RegisterResponse> registerTrackingBatchAsync(
+            List<Track17RegisterRequest> requests) {
+        Request request = buildRegisterRequest(requests);
+        return enqueue(OPERATION_REGISTER, request, response -> handleRegisterResponse(response, requests.size()))
+                .exceptionally(e -> {
+                    throw wrapRegisterException(e instanceof CompletionException ? e.getCause() : e);
+                });
+    }
+
+    private Request buildRegisterRequest(List<Track17RegisterRequest> requests) {
         log.info("Registering {} tracking numbers to 17Track", requests.size());
 
         if (requests.size() > 40) {
@@ -59,45 +118,48 @@ public class Track17Service {
             throw BusinessException.of("单次最多注册40个运单");
         }
 
-        try {
-            String url = config.getUrl() + config.getRegisterEndpoint();
-            String requestBody = JSON.toJSONString(requests);
+        String url = config.getUrl() + config.getRegisterEndpoint();
+        String requestBody = JSON.toJSONString(requests);
 
-            log.debug("17Track register request: {}", requestBody);
+        log.debug("17Track register request: {}", requestBody);
 
-            Request request = new Request.Builder()
-                    .url(url)
-                    .addHeader("17token", config.getToken())
-                    .addHeader("Content-Type", "application/json")
-                    .post(RequestBody.create(requestBody, JSON_MEDIA_TYPE))
-                    .build();
-
-            try (Response response = httpClient.newCall(request).execute()) {
-                String responseBody = response.body() != null ? response.body().string() : "";
-                log.debug("17Track register response [{}]: {}", response.code(), responseBody);
+        return new Request.Builder()
+                .url(url)
+                .addHeader("17token", config.getToken())
+                .addHeader("Content-Type", "application/json")
+                .post(RequestBody.create(requestBody, JSON_MEDIA_TYPE))
+                .build();
+    }
 
-                if (!response.isSuccessful()) {
+    private Track17RegisterResponse handleRegisterResponse(Response response, int count) throws IOException {
+        String responseBody = response.body() != null ? response.body().string() : "";
+        log.debug("17Track register response [{}]: {}", response.code(), responseBody);
 
-                    throw BusinessException.of("17Track API请求失败，HTTP状态码: " + response.code());
-                }
+        if (!response.isSuccessful()) {
+            throw BusinessException.of("17Track API请求失败，HTTP状态码: " + response.code());
+        }
 
-                Track17RegisterResponse apiResponse = JSON.parseObject(responseBody, Track17RegisterResponse.class);
+        Track17RegisterResponse apiResponse = JSON.parseObject(responseBody, Track17RegisterResponse.class);
+
+        if (apiResponse.getCode() != null && apiResponse.getCode() == 0) {
+            log.info("Successfully registered {} tracking numbers", count);
+            // 只有注册成功的运单消耗额度
+            quotaService.recordRegistrations(apiResponse.getData() != null && apiResponse.getData().getAccepted() != null
+                    ? apiResponse.getData().getAccepted().size() : 0);
+            return apiResponse;
+        } else {
+            log.error("17Track register returned error code {}: {}",
+                    apiResponse.getCode(), apiResponse.getMsg());
+            throw BusinessException.of("17Track注册失败: " + apiResponse.getMsg());
+        }
+    }
 
-                if (apiResponse.getCode() != null && apiResponse.getCode() == 0) {
-                    log.info("Successfully registered {} tracking numbers", requests.size());
-                    return apiResponse;
-                } else {
-                    log.error("17Track register returned error code {}: {}",
-                            apiResponse.getCode(), apiResponse.getMsg());
-                    throw BusinessException.of("17Track注册失败: " + apiResponse.getMsg());
-                }
-            }
-        } catch (BusinessException e) {
-            throw e;
-        } catch (Exception e) {
-            log.error("Failed to register tracking numbers to 17Track", e);
-            throw BusinessException.of("注册运单到17Track失败: " + e.getMessage());
+    private BusinessException wrapRegisterException(Throwable e) {
+        if (e instanceof BusinessException) {
+            return (BusinessException) e;
         }
+        log.error("Failed to register tracking numbers to 17Track", e);
+        return BusinessException.of("注册运单到17Track失败: " + e.getMessage());
     }
 
     /**
@@ -136,7 +198,7 @@ public class Track17Service {
                     .post(RequestBody.create(requestBody, JSON_MEDIA_TYPE))
                     .build();
 
-            try (Response response = httpClient.newCall(request).execute()) {
+            return execute(OPERATION_QUERY, request, response -> {
                 String responseBody = response.body() != null ? response.body().string() : "";
                 log.debug("17Track query response [{}]: {}", response.code(), responseBody);
 
@@ -148,13 +210,14 @@ public class Track17Service {
 
                 if (apiResponse.getCode() != null && apiResponse.getCode() == 0) {
                     log.info("Successfully queried tracking info");
+                    quotaService.recordQueries(requests.size());
                     return apiResponse;
                 } else {
                     log.error("17Track query returned error code {}: {}",
                             apiResponse.getCode(), apiResponse.getMsg());
                     throw BusinessException.of("17Track查询失败: " + apiResponse.getMsg());
                 }
-            }
+            });
         } catch (BusinessException e) {
             throw e;
         } catch (Exception e) {
@@ -179,6 +242,46 @@ public class Track17Service {
      * API: POST /track/v2.2/gettrackinfo
      */
     public Track17V2Response queryTrackingV2Batch(List<Track17RegisterRequest> requests) {
+        List<Track17V2Response.AcceptedItem> accepted = new ArrayList<>();
+        Track17V2Response apiResponse = queryTrackingV2Batch(requests, accepted::add);
+        apiResponse.getData().setAccepted(accepted);
+        return apiResponse;
+    }
+
+    /**
+     * 批量查询运单信息V2（最多40个，流式解析）
+     * 响应体不读成字符串，accepted中的运单逐个解析后交给回调，返回结果只包含code、msg和rejected
+     * API: POST /track/v2.2/gettrackinfo
+     *
+     * @param consumer 每解析出一个accepted运单回调一次
+     */
+    public Track17V2Response queryTrackingV2Batch(List<Track17RegisterRequest> requests,
+            Consumer<Track17V2Response.AcceptedItem> consumer) {
+        Request request = buildQueryV2Request(requests);
+
+        try {
+            return execute(OPERATION_QUERY, request,
+                    response -> handleQueryV2Response(response, requests.size(), consumer));
+        } catch (Exception e) {
+            throw wrapQueryV2Exception(e);
+        }
+    }
+
+    /**
+     * 异步批量查询运单信息V2（最多40个，流式解析）
+     * 限流等待和网络IO都不占用调用线程；consumer在OkHttp回调线程中执行
+     */
+    public CompletableFuture<Track17V2Response> queryTrackingV2BatchAsync(List<Track17RegisterRequest> requests,
+            Consumer<Track17V2Response.AcceptedItem> consumer) {
+        Request request = buildQueryV2Request(requests);
+        return enqueue(OPERATION_QUERY, request,
+                response -> handleQueryV2Response(response, requests.size(), consumer))
+                .exceptionally(e -> {
+                    throw wrapQueryV2Exception(e instanceof CompletionException ? e.getCause() : e);
+                });
+    }
+
+    private Request buildQueryV2Request(List<Track17RegisterRequest> requests) {
         log.info("Querying V2 format for {} tracking numbers from 17Track", requests.size());
 
         if (requests.size() > 40) {
@@ -186,54 +289,269 @@ public class Track17Service {
             throw BusinessException.of("单次最多查询40个运单");
         }
 
-        try {
-            // 使用配置的query endpoint（v2.4格式也支持track_info）
-            String url = config.getUrl() + config.getQueryEndpoint();
-            String requestBody = JSON.toJSONString(requests);
+        // 使用配置的query endpoint（v2.4格式也支持track_info）
+        String url = config.getUrl() + config.getQueryEndpoint();
+        String requestBody = JSON.toJSONString(requests);
 
-            log.debug("17Track V2 query request to {}: {}", url, requestBody);
+        log.debug("17Track V2 query request to {}: {}", url, requestBody);
 
-            Request request = new Request.Builder()
-                    .url(url)
-                    .addHeader("17token", config.getToken())
-                    .addHeader("Content-Type", "application/json")
-                    .post(RequestBody.create(requestBody, JSON_MEDIA_TYPE))
-                    .build();
+        return new Request.Builder()
+                .url(url)
+                .addHeader("17token", config.getToken())
+                .addHeader("Content-Type", "application/json")
+                .post(RequestBody.create(requestBody, JSON_MEDIA_TYPE))
+                .build();
+    }
 
-            try (Response response = httpClient.newCall(request).execute()) {
-                String responseBody = response.body() != null ? response.body().string() : "";
-                log.debug("17Track V2 query response [{}]: {}", response.code(),
-                         responseBody.length() > 500 ? responseBody.substring(0, 500) + "..." : responseBody);
+    private Track17V2Response handleQueryV2Response(Response response, int count,
+            Consumer<Track17V2Response.AcceptedItem> consumer) throws IOException {
+        if (!response.isSuccessful()) {
+            log.debug("17Track V2 query response [{}]", response.code());
+            throw BusinessException.of("17Track API请求失败，HTTP状态码: " + response.code());
+        }
+        if (response.body() == null) {
+            throw BusinessException.of("17Track API返回空响应");
+        }
 
-                if (!response.isSuccessful()) {
+        int[] acceptedCount = {0};
+        Track17V2Response apiResponse = Track17V2StreamReader.read(response.body().byteStream(), item -> {
+            acceptedCount[0]++;
+            consumer.accept(item);
+        });
+        log.debug("17Track V2 query response [{}]: code={}, accepted={}, rejected={}", response.code(),
+                apiResponse.getCode(), acceptedCount[0],
+                apiResponse.getData().getRejected() != null ? apiResponse.getData().getRejected().size() : 0);
+
+        if (apiResponse.getCode() != null && apiResponse.getCode() == 0) {
+            log.info("Successfully queried V2 tracking info");
+            quotaService.recordQueries(count);
+            return apiResponse;
+        } else {
+            log.error("17Track V2 query returned error code {}: {}",
+                    apiResponse.getCode(), apiResponse.getMsg());
+            throw BusinessException.of("17Track查询失败: " + apiResponse.getMsg());
+        }
+    }
+
+    private BusinessException wrapQueryV2Exception(Throwable e) {
+        if (e instanceof BusinessException) {
+            return (BusinessException) e;
+        }
+        log.error("Failed to query V2 tracking info from 17Track", e);
+        return BusinessException.of("查询物流信息失败: " + e.getMessage());
+    }
+
+    /**
+     * 同步发送请求（熔断、限流、429/5xx及网络异常时带抖动退避重试；注册请求的重试范围见 canRetry）
+     */
+    private <T> T execute(String operation, Request request, ResponseHandler<T> handler) throws IOException {
+        for (int attempt = 0; ; attempt++) {
+            // 先取限流令牌再检查熔断：等待令牌时被中断不会占用半开状态的试探名额
+            rateLimiter.acquire();
+            checkCircuit(operation);
+
+            long backoffNanos;
+            try (Response response = httpClient.newCall(request).execute()) {
+                if (!isRetryable(response.code())) {
+                    circuitBreaker.recordSuccess();
+                    return recordOutcome(operation, () -> handler.handle(response));
+                }
+                circuitBreaker.recordFailure();
+                if (attempt >= config.getMaxRetries() || !canRetry(operation, response.code())) {
+                    countRequest(operation, "failure");
                     throw BusinessException.of("17Track API请求失败，HTTP状态码: " + response.code());
                 }
+                backoffNanos = backoffNanos(attempt, response.header("Retry-After"));
+                log.warn("17Track {} returned HTTP {}, retrying in {} ms (attempt {})", operation,
+                        response.code(), TimeUnit.NANOSECONDS.toMillis(backoffNanos), attempt + 1);
+            } catch (IOException e) {
+                circuitBreaker.recordFailure();
+                if (attempt >= config.getMaxRetries() || !canRetry(operation, e)) {
+                    countRequest(operation, "failure");
+                    throw e;
+                }
+                backoffNanos = backoffNanos(attempt, null);
+                log.warn("17Track {} failed: {}, retrying in {} ms (attempt {})", operation, e.getMessage(),
+                        TimeUnit.NANOSECONDS.toMillis(backoffNanos), attempt + 1);
+            }
 
-                Track17V2Response apiResponse = JSON.parseObject(responseBody, Track17V2Response.class);
+            meterRegistry.counter("track17.retries", "operation", operation).increment();
+            try {
+                TimeUnit.NANOSECONDS.sleep(backoffNanos);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting to retry 17Track request", e);
+            }
+        }
+    }
 
-                if (apiResponse.getCode() != null && apiResponse.getCode() == 0) {
-                    log.info("Successfully queried V2 tracking info");
-                    return apiResponse;
-                } else {
-                    log.error("17Track V2 query returned error code {}: {}",
-                            apiResponse.getCode(), apiResponse.getMsg());
-                    throw BusinessException.of("17Track查询失败: " + apiResponse.getMsg());
+    /**
+     * 异步发送请求（熔断、限流、重试与同步调用一致）
+     * 限流和退避等待通过延迟执行器完成，不阻塞调用线程；响应在OkHttp回调线程中处理并关闭
+     */
+    private <T> CompletableFuture<T> enqueue(String operation, Request request, ResponseHandler<T> handler) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        enqueueAttempt(operation, request, handler, 0, 0, future);
+        return future;
+    }
+
+    private <T> void enqueueAttempt(String operation, Request request, ResponseHandler<T> handler,
+            int attempt, long backoffNanos, CompletableFuture<T> future) {
+        try {
+            checkCircuit(operation);
+        } catch (BusinessException e) {
+            future.completeExceptionally(e);
+            return;
+        }
+
+        Executor delayed = CompletableFuture.delayedExecutor(backoffNanos + rateLimiter.reserve(),
+                TimeUnit.NANOSECONDS);
+        delayed.execute(() -> httpClient.newCall(request).enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                circuitBreaker.recordFailure();
+                if (attempt >= config.getMaxRetries() || !canRetry(operation, e)) {
+                    countRequest(operation, "failure");
+                    future.completeExceptionally(e);
+                    return;
                 }
+                long nextBackoff = backoffNanos(attempt, null);
+                log.warn("17Track {} failed: {}, retrying in {} ms (attempt {})", operation, e.getMessage(),
+                        TimeUnit.NANOSECONDS.toMillis(nextBackoff), attempt + 1);
+                meterRegistry.counter("track17.retries", "operation", operation).increment();
+                enqueueAttempt(operation, request, handler, attempt + 1, nextBackoff, future);
             }
-        } catch (BusinessException e) {
+
+            @Override
+            public void onResponse(Call call, Response response) {
+                try (Response r = response) {
+                    if (!isRetryable(r.code())) {
+                        circuitBreaker.recordSuccess();
+                        future.complete(recordOutcome(operation, () -> handler.handle(r)));
+                        return;
+                    }
+                    circuitBreaker.recordFailure();
+                    if (attempt >= config.getMaxRetries() || !canRetry(operation, r.code())) {
+                        countRequest(operation, "failure");
+                        throw BusinessException.of("17Track API请求失败，HTTP状态码: " + r.code());
+                    }
+                    long nextBackoff = backoffNanos(attempt, r.header("Retry-After"));
+                    log.warn("17Track {} returned HTTP {}, retrying in {} ms (attempt {})", operation,
+                            r.code(), TimeUnit.NANOSECONDS.toMillis(nextBackoff), attempt + 1);
+                    meterRegistry.counter("track17.retries", "operation", operation).increment();
+                    enqueueAttempt(operation, request, handler, attempt + 1, nextBackoff, future);
+                } catch (Throwable e) {
+                    future.completeExceptionally(e);
+                }
+            }
+        }));
+    }
+
+    private void checkCircuit(String operation) {
+        if (!circuitBreaker.allowRequest()) {
+            countRequest(operation, "rejected");
+            throw BusinessException.of("17Track服务暂时不可用，请稍后重试");
+        }
+    }
+
+    /**
+     * 429限流和5xx服务端错误可重试
+     */
+    private boolean isRetryable(int code) {
+        return code == 429 || code >= 500;
+    }
+
+    /**
+     * 注册请求不是幂等的：5xx或读超时时17Track可能已经注册成功，重发会被拒绝为"已注册"，
+     * 因此注册只在429（未被处理）时重试；查询可安全重试
+     */
+    private boolean canRetry(String operation, int code) {
+        return code == 429 || !OPERATION_REGISTER.equals(operation);
+    }
+
+    /**
+     * 网络异常：注册只在连接未建立（请求未发出）时重试
+     */
+    private boolean canRetry(String operation, IOException e) {
+        return !OPERATION_REGISTER.equals(operation)
+                || e instanceof ConnectException
+                || e instanceof UnknownHostException
+                || e instanceof NoRouteToHostException;
+    }
+
+    /**
+     * 指数退避 + 全抖动；服务端返回Retry-After（秒）时以其为下限
+     */
+    private long backoffNanos(int attempt, String retryAfter) {
+        long capMillis = Math.min(config.getRetryMaxDelayMillis(), config.getRetryBaseDelayMillis() << attempt);
+        long delayMillis = ThreadLocalRandom.current().nextLong(capMillis + 1);
+        if (StringUtils.isNumeric(retryAfter)) {
+            delayMillis = Math.max(delayMillis, TimeUnit.SECONDS.toMillis(Long.parseLong(retryAfter)));
+        }
+        return TimeUnit.MILLISECONDS.toNanos(delayMillis);
+    }
+
+    private <T> T recordOutcome(String operation, ResponseSupplier<T> supplier) throws IOException {
+        try {
+            T result = supplier.get();
+            countRequest(operation, "success");
+            return result;
+        } catch (IOException | RuntimeException e) {
+            countRequest(operation, "failure");
             throw e;
-        } catch (Exception e) {
-            log.error("Failed to query V2 tracking info from 17Track", e);
-            throw BusinessException.of("查询物流信息失败: " + e.getMessage());
         }
     }
 
+    private void countRequest(String operation, String outcome) {
+        meterRegistry.counter("track17.requests", "operation", operation, "outcome", outcome).increment();
+    }
+
+    @FunctionalInterface
+    private interface ResponseSupplier<T> {
+        T get() throws IOException;
+    }
+
+    @FunctionalInterface
+    private interface ResponseHandler<T> {
+        T handle(Response response) throws IOException;
+    }
+
     /**
      * 验证Webhook签名
+     * 17Track推送时在请求头中携带请求体的HMAC-SHA256签名（十六进制）
      */
     public boolean validateWebhookSignature(String signature, String payload) {
-        // TODO: 实现17Track的Webhook签名验证逻辑
-        // 17Track使用的是HMAC-SHA256签名
-        return true;
+        if (StringUtils.isBlank(config.getWebhookSecret())) {
+            log.warn("17Track webhook secret not configured, rejecting push");
+            return false;
+        }
+        if (StringUtils.isBlank(signature) || payload == null) {
+            log.warn("17Track webhook signature missing");
+            return false;
+        }
+
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(config.getWebhookSecret().getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+            byte[] expected = mac.doFinal(payload.getBytes(StandardCharsets.UTF_8));
+
+            byte[] actual;
+            try {
+                actual = HexFormat.of().parseHex(signature.trim());
+            } catch (IllegalArgumentException e) {
+                log.warn("17Track webhook signature is not valid hex");
+                return false;
+            }
+
+            // 常量时间比较，避免时序攻击
+            boolean valid = MessageDigest.isEqual(expected, actual);
+            if (!valid) {
+                log.warn("17Track webhook signature validation failed");
+            }
+            return valid;
+        } catch (Exception e) {
+            log.error("Error validating 17Track webhook signature", e);
+            return false;
+        }
     }
 }
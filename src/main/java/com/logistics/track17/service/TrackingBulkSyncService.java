@@ -0,0 +1,149 @@
+package com.logistics.track17.service;
+
+import com.logistics.track17.dto.Track17RegisterRequest;
+import com.logistics.track17.dto.Track17V2Response;
+import com.logistics.track17.entity.TrackingNumber;
+import com.logistics.track17.mapper.TrackingNumberMapper;
+import com.logistics.track17.util.TrackingSyncPolicy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.stream.Collectors;
+
+/**
+ * 运单批量同步服务
+ * 将待同步运单按每组40个调用17Track批量查询接口，再将返回结果按运单号分发回各运单并批量写库
+ */
+@Slf4j
+@Service
+public class TrackingBulkSyncService {
+
+    /**
+     * 17Track单次查询最多40个运单
+     */
+    private static final int TRACK17_BATCH_SIZE = 40;
+
+    private final Track17Service track17Service;
+    private final TrackingService trackingService;
+    private final TrackingNumberMapper trackingNumberMapper;
+
+    public TrackingBulkSyncService(Track17Service track17Service,
+            TrackingService trackingService,
+            TrackingNumberMapper trackingNumberMapper) {
+        this.track17Service = track17Service;
+        this.trackingService = trackingService;
+        this.trackingNumberMapper = trackingNumberMapper;
+    }
+
+    /**
+     * 批量同步运单
+     * 各组查询异步并发发出（在途数量由17Track客户端限制），按顺序等待结果后写库；
+     * 某一组请求失败时只跳过该组，不影响其他组
+     *
+     * @return 成功同步的运单数量
+     */
+    public int syncBatch(List<TrackingNumber> trackingNumbers) {
+        List<ChunkSync> chunks = new ArrayList<>();
+        for (int i = 0; i < trackingNumbers.size(); i += TRACK17_BATCH_SIZE) {
+            int end = Math.min(i + TRACK17_BATCH_SIZE, trackingNumbers.size());
+            try {
+                chunks.add(startChunk(trackingNumbers.subList(i, end), i, end));
+            } catch (Exception e) {
+                log.warn("Failed to bulk sync tracking numbers ({}-{}): {}", i, end, e.getMessage());
+            }
+        }
+
+        int synced = 0;
+        for (ChunkSync chunk : chunks) {
+            try {
+                synced += finishChunk(chunk, chunk.future.join());
+            } catch (Exception e) {
+                Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                log.warn("Failed to bulk sync tracking numbers ({}-{}): {}", chunk.from, chunk.to,
+                        cause.getMessage());
+            }
+        }
+        return synced;
+    }
+
+    /**
+     * 发出一组（不超过40个）运单的异步查询
+     * 流式解析：每返回一个运单立即合并，不在内存中保留完整响应
+     */
+    private ChunkSync startChunk(List<TrackingNumber> trackingNumbers, int from, int to) {
+        ChunkSync chunk = new ChunkSync(from, to);
+        for (TrackingNumber trackingNumber : trackingNumbers) {
+            chunk.pending.putIfAbsent(trackingNumber.getTrackingNumber(), trackingNumber);
+        }
+
+        List<Track17RegisterRequest> requests = chunk.pending.values().stream()
+                .map(tn -> new Track17RegisterRequest(tn.getTrackingNumber(), tn.getCarrierCode()))
+                .collect(Collectors.toList());
+
+        // 回调在OkHttp线程中执行，future完成后再由调度线程读取结果
+        chunk.future = track17Service.queryTrackingV2BatchAsync(requests, item -> {
+            TrackingNumber trackingNumber = chunk.pending.remove(item.getNumber());
+            if (trackingNumber == null) {
+                log.debug("Unexpected tracking number in 17Track response: {}", item.getNumber());
+                return;
+            }
+            chunk.updated.add(trackingService.mergeSyncResult(trackingNumber, item));
+        });
+        return chunk;
+    }
+
+    /**
+     * 保存一组运单的查询结果
+     */
+    private int finishChunk(ChunkSync chunk, Track17V2Response response) {
+        Map<String, TrackingNumber> pending = chunk.pending;
+        List<TrackingService.SyncMergeResult> updated = chunk.updated;
+
+        List<Long> rejectedIds = new ArrayList<>();
+        if (response.getData().getRejected() != null) {
+            for (Track17V2Response.RejectedItem rejected : response.getData().getRejected()) {
+                TrackingNumber trackingNumber = pending.remove(rejected.getNumber());
+                if (trackingNumber != null) {
+                    rejectedIds.add(trackingNumber.getId());
+                    log.debug("Bulk sync rejected for {}: {}", rejected.getNumber(),
+                            rejected.getError() != null ? rejected.getError().getMessage() : "unknown");
+                }
+            }
+        }
+
+        int changed = trackingService.saveSyncResults(updated);
+
+        // 被拒绝的运单推迟重试，避免反复消耗查询额度
+        if (!rejectedIds.isEmpty()) {
+            trackingNumberMapper.updateNextSyncAtBatch(rejectedIds,
+                    TrackingSyncPolicy.retryAfterFailure(LocalDateTime.now()));
+        }
+
+        log.info("Bulk synced {} tracking numbers ({} changed), rejected {}, missing {}",
+                updated.size(), changed, rejectedIds.size(), pending.size());
+        return updated.size();
+    }
+
+    /**
+     * 一组运单的同步状态
+     */
+    private static class ChunkSync {
+        private final int from;
+        private final int to;
+        private final Map<String, TrackingNumber> pending = new LinkedHashMap<>();
+        private final List<TrackingService.SyncMergeResult> updated = new ArrayList<>();
+        private CompletableFuture<Track17V2Response> future;
+
+        ChunkSync(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package com.logistics.track17.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.logistics.track17.dto.TrackingResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * 运单详情两级缓存
+ * 本地Caffeine缓存（有界、短过期）在前，Redis缓存 tracking:detail:{id} 在后；
+ * 失效时删除Redis并通过pub/sub广播运单ID，所有节点同时清除本地缓存；
+ * 事务内的失效请求合并后在提交后统一执行，避免提交前被其他请求用旧数据重新填充缓存
+ */
+@Slf4j
+@Service
+public class TrackingCacheService {
+
+    private static final String TRACKING_CACHE_PREFIX = "tracking:detail:";
+    private static final long TRACKING_CACHE_EXPIRE_SECONDS = 300; // 5分钟过期
+    private static final String EVICT_CHANNEL = "tracking:detail:evict";
+    // 单条DEL命令最多携带的key数
+    private static final int EVICT_BATCH_SIZE = 500;
+    // 当前事务待清除的运单ID（事务资源key）
+    private static final Object PENDING_EVICTIONS_KEY = new Object();
+
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final StringRedisTemplate stringRedisTemplate;
+    private final RedisMessageListenerContainer listenerContainer;
+
+    @Value("${tracking.cache.local-max-size:10000}")
+    private long localMaxSize;
+
+    @Value("${tracking.cache.local-expire-seconds:60}")
+    private long localExpireSeconds;
+
+    private Cache<Long, TrackingResponse> localCache;
+
+    public TrackingCacheService(RedisTemplate<String, Object> redisTemplate,
+            StringRedisTemplate stringRedisTemplate,
+            RedisMessageListenerContainer listenerContainer) {
+        this.redisTemplate = redisTemplate;
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.listenerContainer = listenerContainer;
+    }
+
+    @PostConstruct
+    public void init() {
+        localCache = Caffeine.newBuilder()
+                .maximumSize(localMaxSize)
+                .expireAfterWrite(localExpireSeconds, TimeUnit.SECONDS)
+                .build();
+
+        // 订阅其他节点（包括本节点）发出的失效消息
+        listenerContainer.addMessageListener((message, pattern) -> {
+            String body = new String(message.getBody(), StandardCharsets.UTF_8);
+            List<Long> ids = Arrays.stream(body.split(","))
+                    .filter(id -> !id.isEmpty())
+                    .map(Long::valueOf)
+                    .collect(Collectors.toList());
+            localCache.invalidateAll(ids);
+            log.debug("Local tracking cache evicted by broadcast: {} ids", ids.size());
+        }, new ChannelTopic(EVICT_CHANNEL));
+    }
+
+    /**
+     * 读取运单详情缓存（本地 -> Redis），未命中返回null
+     */
+    public TrackingResponse get(Long id) {
+        // 当前事务已修改的运单不读缓存
+        if (isPendingEviction(id)) {
+            return null;
+        }
+
+        TrackingResponse cached = localCache.getIfPresent(id);
+        if (cached != null) {
+            return cached;
+        }
+
+        cached = (TrackingResponse) redisTemplate.opsForValue().get(TRACKING_CACHE_PREFIX + id);
+        if (cached != null) {
+            localCache.put(id, cached);
+        }
+        return cached;
+    }
+
+    /**
+     * 写入运单详情缓存（Redis 5分钟过期，本地缓存按配置过期）
+     */
+    public void put(Long id, TrackingResponse response) {
+        // 事务未提交的数据不写缓存
+        if (isPendingEviction(id)) {
+            return;
+        }
+
+        redisTemplate.opsForValue().set(TRACKING_CACHE_PREFIX + id, response,
+                TRACKING_CACHE_EXPIRE_SECONDS, TimeUnit.SECONDS);
+        localCache.put(id, response);
+    }
+
+    /**
+     * 清除单个运单缓存（在事务中调用时推迟到提交后执行）
+     */
+    public void evict(Long id) {
+        evict(Collections.singletonList(id));
+    }
+
+    /**
+     * 清除多个运单缓存（在事务中调用时推迟到提交后执行）
+     * 同一事务内多次调用合并为一次清除
+     */
+    public void evict(Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            evictNow(ids);
+            return;
+        }
+
+        @SuppressWarnings("unchecked")
+        Set<Long> pending = (Set<Long>) TransactionSynchronizationManager.getResource(PENDING_EVICTIONS_KEY);
+        if (pending == null) {
+            Set<Long> registered = new LinkedHashSet<>();
+            TransactionSynchronizationManager.bindResource(PENDING_EVICTIONS_KEY, registered);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    try {
+                        evictNow(registered);
+                    } catch (Exception e) {
+                        // 数据已提交，清除失败时缓存依赖过期时间兜底
+                        log.error("Failed to evict tracking cache after commit: {} ids", registered.size(), e);
+                    }
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(PENDING_EVICTIONS_KEY);
+                }
+            });
+            pending = registered;
+        }
+        pending.addAll(ids);
+    }
+
+    /**
+     * 立即清除：按批多键删除Redis，并广播通知所有节点清除本地缓存
+     */
+    private void evictNow(Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+
+        List<String> keys = new ArrayList<>(Math.min(ids.size(), EVICT_BATCH_SIZE));
+        for (Long id : ids) {
+            keys.add(TRACKING_CACHE_PREFIX + id);
+            if (keys.size() == EVICT_BATCH_SIZE) {
+                redisTemplate.delete(keys);
+                keys.clear();
+            }
+        }
+        if (!keys.isEmpty()) {
+            redisTemplate.delete(keys);
+        }
+        localCache.invalidateAll(ids);
+
+        try {
+            stringRedisTemplate.convertAndSend(EVICT_CHANNEL,
+                    ids.stream().map(String::valueOf).collect(Collectors.joining(",")));
+        } catch (Exception e) {
+            // 广播失败时其他节点的本地缓存依赖过期时间兜底
+            log.warn("Failed to broadcast tracking cache eviction: {} ids", ids.size(), e);
+        }
+        log.debug("Cache invalidated for {} trackings", ids.size());
+    }
+
+    private boolean isPendingEviction(Long id) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return false;
+        }
+        Set<?> pending = (Set<?>) TransactionSynchronizationManager.getResource(PENDING_EVICTIONS_KEY);
+        return pending != null && pending.contains(id);
+    }
+}
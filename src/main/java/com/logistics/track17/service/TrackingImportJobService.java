@@ -0,0 +1,163 @@
+package com.logistics.track17.service;
+
+import com.logistics.track17.dto.BatchImportRequest;
+import com.logistics.track17.dto.BatchImportResult;
+import com.logistics.track17.dto.ImportJobStatus;
+import com.logistics.track17.exception.BusinessException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 运单批量导入后台任务服务
+ * 提交后立即返回任务ID，导入在后台线程执行；
+ * 每批处理完成后将进度推送到 /topic/import-jobs/{jobId}，并写入Redis供断线重连的客户端查询
+ */
+@Slf4j
+@Service
+public class TrackingImportJobService {
+
+    private static final String JOB_CACHE_PREFIX = "tracking:import-job:";
+    private static final long JOB_CACHE_EXPIRE_HOURS = 24;
+    private static final String JOB_TOPIC_PREFIX = "/topic/import-jobs/";
+
+    private final TrackingService trackingService;
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final SimpMessagingTemplate simpMessagingTemplate;
+    private final TaskExecutor importJobExecutor;
+
+    public TrackingImportJobService(TrackingService trackingService,
+            RedisTemplate<String, Object> redisTemplate,
+            SimpMessagingTemplate simpMessagingTemplate,
+            @Qualifier("importJobExecutor") TaskExecutor importJobExecutor) {
+        this.trackingService = trackingService;
+        this.redisTemplate = redisTemplate;
+        this.simpMessagingTemplate = simpMessagingTemplate;
+        this.importJobExecutor = importJobExecutor;
+    }
+
+    /**
+     * 提交批量导入任务
+     */
+    public ImportJobStatus submit(BatchImportRequest request) {
+        ImportJob job = new ImportJob(UUID.randomUUID().toString().replace("-", ""),
+                request.getItems().size());
+        publish(job.snapshot());
+
+        try {
+            importJobExecutor.execute(() -> run(job, request));
+        } catch (TaskRejectedException e) {
+            log.warn("Import job rejected, executor is busy: {}", job.jobId);
+            redisTemplate.delete(JOB_CACHE_PREFIX + job.jobId);
+            throw BusinessException.of("当前导入任务较多，请稍后重试");
+        }
+
+        log.info("Batch import job submitted: {} ({} items)", job.jobId, job.total);
+        return job.snapshot();
+    }
+
+    /**
+     * 查询导入任务状态
+     */
+    public ImportJobStatus getStatus(String jobId) {
+        ImportJobStatus status = (ImportJobStatus) redisTemplate.opsForValue().get(JOB_CACHE_PREFIX + jobId);
+        if (status == null) {
+            throw BusinessException.of(404, "导入任务不存在或已过期");
+        }
+        return status;
+    }
+
+    private void run(ImportJob job, BatchImportRequest request) {
+        try {
+            BatchImportResult result = trackingService.batchImport(request, (processed, registered) -> {
+                // 加锁保证推送顺序与进度一致
+                synchronized (job) {
+                    publish(job.progress(processed, registered));
+                }
+            });
+            publish(job.complete(result));
+            log.info("Batch import job completed: {} - {}", job.jobId, result.getMessage());
+        } catch (Exception e) {
+            log.error("Batch import job failed: {}", job.jobId, e);
+            publish(job.fail(e.getMessage()));
+        }
+    }
+
+    /**
+     * 保存任务状态并推送进度（推送失败不影响导入）
+     */
+    private void publish(ImportJobStatus status) {
+        try {
+            redisTemplate.opsForValue().set(JOB_CACHE_PREFIX + status.getJobId(), status,
+                    JOB_CACHE_EXPIRE_HOURS, TimeUnit.HOURS);
+            simpMessagingTemplate.convertAndSend(JOB_TOPIC_PREFIX + status.getJobId(), status);
+        } catch (Exception e) {
+            log.warn("Failed to publish import job progress: {}", status.getJobId(), e);
+        }
+    }
+
+    /**
+     * 运行中的导入任务（进度回调可能来自多个线程，统一加锁）
+     */
+    private static class ImportJob {
+        private final String jobId;
+        private final int total;
+        private final long startNanos = System.nanoTime();
+
+        private String status = ImportJobStatus.STATUS_RUNNING;
+        private int processed;
+        private int success;
+        private int failed;
+        private String message;
+
+        ImportJob(String jobId, int total) {
+            this.jobId = jobId;
+            this.total = total;
+        }
+
+        synchronized ImportJobStatus progress(int processedDelta, int registeredDelta) {
+            processed += processedDelta;
+            success += registeredDelta;
+            failed += processedDelta - registeredDelta;
+            return snapshot();
+        }
+
+        synchronized ImportJobStatus complete(BatchImportResult result) {
+            status = ImportJobStatus.STATUS_COMPLETED;
+            processed = result.getTotal();
+            success = result.getSuccess();
+            failed = result.getFailed();
+            message = result.getMessage();
+            return snapshot();
+        }
+
+        synchronized ImportJobStatus fail(String error) {
+            status = ImportJobStatus.STATUS_FAILED;
+            message = "导入失败: " + error;
+            return snapshot();
+        }
+
+        synchronized ImportJobStatus snapshot() {
+            ImportJobStatus snapshot = new ImportJobStatus();
+            snapshot.setJobId(jobId);
+            snapshot.setStatus(status);
+            snapshot.setTotal(total);
+            snapshot.setProcessed(processed);
+            snapshot.setSuccess(success);
+            snapshot.setFailed(failed);
+            snapshot.setMessage(message);
+            if (ImportJobStatus.STATUS_RUNNING.equals(status) && processed > 0 && processed < total) {
+                long elapsedSeconds = TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - startNanos);
+                snapshot.setEtaSeconds(elapsedSeconds * (total - processed) / processed);
+            }
+            return snapshot;
+        }
+    }
+}
@@ -9,18 +9,30 @@ import com.logistics.track17.exception.BusinessException;
 import com.logistics.track17.mapper.ParcelMapper;
 import com.logistics.track17.mapper.TrackingEventMapper;
 import com.logistics.track17.mapper.TrackingNumberMapper;
+import com.logistics.track17.util.PageCursor;
 import com.logistics.track17.util.Track17V2Parser;
+import com.logistics.track17.util.TrackingSyncPolicy;
+import lombok.AllArgsConstructor;
+import lombok.Data;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.beans.BeanUtils;
-import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
-import java.util.concurrent.TimeUnit;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 import java.util.stream.Collectors;
 
 /**
@@ -35,24 +47,38 @@ public class TrackingService {
     private final ParcelMapper parcelMapper;
     private final Track17Service track17Service;
     private final CarrierService carrierService;
+    private final Track17QuotaService track17QuotaService;
+    private final Executor track17Executor;
+    private final TransactionTemplate transactionTemplate;
+    private final TrackingCacheService trackingCacheService;
+    private final CarrierPerformanceService carrierPerformanceService;
 
-    @Autowired
-    private RedisTemplate<String, Object> redisTemplate;
+    // 17Track单次注册/查询最多40个运单
+    private static final int TRACK17_BATCH_SIZE = 40;
 
-    // 运单详情缓存配置
-    private static final String TRACKING_CACHE_PREFIX = "tracking:detail:";
-    private static final long TRACKING_CACHE_EXPIRE_SECONDS = 300; // 5分钟过期
+    // 17Track注册拒绝码：运单号已注册，无需重复注册
+    private static final int TRACK17_ALREADY_REGISTERED = -18019901;
 
     public TrackingService(TrackingNumberMapper trackingNumberMapper,
             TrackingEventMapper trackingEventMapper,
             ParcelMapper parcelMapper,
             Track17Service track17Service,
-            CarrierService carrierService) {
+            CarrierService carrierService,
+            Track17QuotaService track17QuotaService,
+            @Qualifier("track17Executor") Executor track17Executor,
+            TransactionTemplate transactionTemplate,
+            TrackingCacheService trackingCacheService,
+            CarrierPerformanceService carrierPerformanceService) {
         this.trackingNumberMapper = trackingNumberMapper;
         this.trackingEventMapper = trackingEventMapper;
         this.parcelMapper = parcelMapper;
         this.track17Service = track17Service;
         this.carrierService = carrierService;
+        this.track17QuotaService = track17QuotaService;
+        this.track17Executor = track17Executor;
+        this.transactionTemplate = transactionTemplate;
+        this.trackingCacheService = trackingCacheService;
+        this.carrierPerformanceService = carrierPerformanceService;
     }
 
     /**
@@ -159,6 +185,7 @@ public class TrackingService {
         trackingNumber.setCarrierCode(actualCarrierCode);
         trackingNumber.setSource(StringUtils.isNotBlank(request.getSource()) ? request.getSource() : "manual");
         trackingNumber.setTrackStatus("InfoReceived");
+        trackingNumber.setNextSyncAt(LocalDateTime.now()); // 交由定时同步任务拉取首次物流信息
 
         // 插入数据库（利用唯一约束保证并发安全）
         try {
@@ -175,14 +202,14 @@ public class TrackingService {
 
     /**
      * 转换17Track carrier ID为系统carrier代码
-     * 使用数据库映射表
+     * 使用内存承运商查找表（无IO）
      */
     private String convertCarrierIdToCode(Integer carrierId) {
         if (carrierId == null) {
             return "unknown";
         }
 
-        // 从数据库查询映射
+        // 从承运商查找表映射
         Carrier carrier = carrierService.getByCarrierId(carrierId);
         if (carrier != null) {
             return carrier.getCarrierCode();
@@ -216,6 +243,45 @@ public class TrackingService {
         return PageResult.of(responses, total, page, pageSize);
     }
 
+    /**
+     * 获取运单列表（游标分页）
+     * 按(updated_at, id)定位下一页，翻页耗时与页码无关；总数仅在首页且显式要求时统计
+     *
+     * @param cursor       上一页返回的nextCursor，为空表示第一页
+     * @param includeTotal 是否统计总数（大表COUNT较慢，默认不统计）
+     */
+    public PageResult<TrackingResponse> getListByCursor(String keyword, Long shopId, String status,
+            String carrierCode, String startDate, String endDate,
+            String cursor, Integer pageSize, boolean includeTotal) {
+        pageSize = pageSize == null || pageSize < 1 ? 20 : Math.min(pageSize, 100);
+        PageCursor position = PageCursor.decode(cursor);
+
+        // 多查一条用于判断是否还有下一页
+        List<TrackingNumber> trackingNumbers = trackingNumberMapper.selectListByCursor(
+                keyword, shopId, status, carrierCode, startDate, endDate,
+                position != null ? position.getUpdatedAt() : null,
+                position != null ? position.getId() : null,
+                pageSize + 1);
+
+        String nextCursor = null;
+        if (trackingNumbers.size() > pageSize) {
+            trackingNumbers = trackingNumbers.subList(0, pageSize);
+            TrackingNumber last = trackingNumbers.get(pageSize - 1);
+            nextCursor = new PageCursor(last.getUpdatedAt(), last.getId()).encode();
+        }
+
+        Long total = null;
+        if (includeTotal && position == null) {
+            total = trackingNumberMapper.count(keyword, shopId, status, carrierCode, startDate, endDate);
+        }
+
+        List<TrackingResponse> responses = trackingNumbers.stream()
+                .map(this::convertToResponse)
+                .collect(Collectors.toList());
+
+        return PageResult.ofCursor(responses, pageSize, nextCursor, total);
+    }
+
     /**
      * 获取已使用的承运商列表（用于筛选）
      */
@@ -227,9 +293,8 @@ public class TrackingService {
      * 获取运单详情（带缓存）
      */
     public TrackingResponse getById(Long id) {
-        // 先查缓存
-        String cacheKey = TRACKING_CACHE_PREFIX + id;
-        TrackingResponse cached = (TrackingResponse) redisTemplate.opsForValue().get(cacheKey);
+        // 先查缓存（本地 -> Redis）
+        TrackingResponse cached = trackingCacheService.get(id);
 
         if (cached != null) {
             log.debug("Cache hit for tracking: {}", id);
@@ -253,8 +318,7 @@ public class TrackingService {
         response.setEvents(eventResponses);
 
         // 写入缓存（5分钟过期）
-        redisTemplate.opsForValue().set(cacheKey, response,
-                TRACKING_CACHE_EXPIRE_SECONDS, TimeUnit.SECONDS);
+        trackingCacheService.put(id, response);
         log.debug("Cached tracking: {}", id);
 
         return response;
@@ -284,31 +348,8 @@ public class TrackingService {
 
                 // 检查是否有成功接收的数据
                 if (data.getAccepted() != null && !data.getAccepted().isEmpty()) {
-                    Track17V2Response.AcceptedItem item = data.getAccepted().get(0);
-
-                    // 使用V2解析器更新运单主信息
-                    Track17V2Parser.parseAndUpdateTracking(item, trackingNumber);
-
-                    // 同步时更新carrier_code为正确的映射（如果carrier_id有值）
-                    if (item.getCarrier() != null) {
-                        String carrierCode = convertCarrierIdToCode(item.getCarrier());
-                        trackingNumber.setCarrierCode(carrierCode);
-                        log.info("Updated carrier_code to: {} (from carrier_id: {})", carrierCode, item.getCarrier());
-                    }
-
-                    trackingNumberMapper.update(trackingNumber);
-
-                    // 清除旧事件
-                    trackingEventMapper.deleteByTrackingId(id);
-
-                    // 使用批量插入保存新事件（性能优化）
-                    List<TrackingEvent> events = Track17V2Parser.parseEvents(item, id);
-                    if (!events.isEmpty()) {
-                        trackingEventMapper.insertBatch(events);
-                        log.info("Batch saved {} tracking events", events.size());
-                    }
-
-                    log.info("Tracking number synced successfully with V2 data: {}", id);
+                    boolean changed = applySyncResult(trackingNumber, data.getAccepted().get(0));
+                    log.info("Tracking number synced successfully with V2 data: {} (changed: {})", id, changed);
                 } else if (data.getRejected() != null && !data.getRejected().isEmpty()) {
                     // 处理被拒绝的运单
                     Track17V2Response.RejectedItem rejected = data.getRejected().get(0);
@@ -324,14 +365,148 @@ public class TrackingService {
             throw BusinessException.of("同步失败: " + e.getMessage());
         }
 
-        // 清除缓存
-        String cacheKey = TRACKING_CACHE_PREFIX + id;
-        redisTemplate.delete(cacheKey);
-        log.debug("Cache invalidated for tracking: {}", id);
-
         return getById(id);
     }
 
+    /**
+     * 处理17Track推送的运单更新
+     *
+     * @return 运单不存在时返回false
+     */
+    @Transactional(rollbackFor = Exception.class)
+    public boolean applyPushUpdate(Track17V2Response.AcceptedItem item) {
+        TrackingNumber trackingNumber = trackingNumberMapper.selectByTrackingNumber(item.getNumber());
+        if (trackingNumber == null) {
+            return false;
+        }
+
+        // 有变化时在保存结果中清除缓存
+        boolean changed = applySyncResult(trackingNumber, item);
+        log.debug("Push update applied for tracking {} (changed: {})", trackingNumber.getId(), changed);
+        return true;
+    }
+
+    /**
+     * 将17Track V2查询结果写入运单和物流事件
+     *
+     * @return 运单或物流事件是否有变化
+     */
+    private boolean applySyncResult(TrackingNumber trackingNumber, Track17V2Response.AcceptedItem item) {
+        return saveSyncResults(Collections.singletonList(mergeSyncResult(trackingNumber, item))) > 0;
+    }
+
+    /**
+     * 单个运单的同步合并结果
+     */
+    @Data
+    @AllArgsConstructor
+    public static class SyncMergeResult {
+        private TrackingNumber trackingNumber;
+        /** 17Track返回的全部物流事件（已计算指纹），内容未变化时为空 */
+        private List<TrackingEvent> events;
+        /** 同步内容（最新状态、最新事件、事件数）是否有变化 */
+        private boolean trackingChanged;
+        /** 合并前的运单状态，用于识别首次签收/异常 */
+        private String previousTrackStatus;
+    }
+
+    /**
+     * 将17Track V2查询结果合并到运单对象（不写库），并根据新状态计算下次同步时间
+     * 同步摘要与上次相同时不解析运单信息和事件，只更新同步时间
+     */
+    public SyncMergeResult mergeSyncResult(TrackingNumber trackingNumber, Track17V2Response.AcceptedItem item) {
+        String previousTrackStatus = trackingNumber.getTrackStatus();
+        String syncHash = Track17V2Parser.syncHash(item);
+        if (syncHash.equals(trackingNumber.getSyncHash())) {
+            LocalDateTime now = LocalDateTime.now();
+            trackingNumber.setLastSyncAt(now);
+            trackingNumber.setNextSyncAt(TrackingSyncPolicy.nextSyncAt(trackingNumber, now));
+            return new SyncMergeResult(trackingNumber, Collections.emptyList(), false, previousTrackStatus);
+        }
+        trackingNumber.setSyncHash(syncHash);
+
+        // 使用V2解析器更新运单主信息
+        Track17V2Parser.parseAndUpdateTracking(item, trackingNumber);
+
+        // 同步时更新carrier_code为正确的映射（如果carrier_id有值）
+        if (item.getCarrier() != null) {
+            String carrierCode = convertCarrierIdToCode(item.getCarrier());
+            trackingNumber.setCarrierCode(carrierCode);
+            log.debug("Updated carrier_code to: {} (from carrier_id: {})", carrierCode, item.getCarrier());
+        }
+
+        // 根据最新状态计算下次自动同步时间（已签收等终态返回null）
+        trackingNumber.setNextSyncAt(TrackingSyncPolicy.nextSyncAt(trackingNumber, LocalDateTime.now()));
+
+        return new SyncMergeResult(trackingNumber,
+                Track17V2Parser.parseEvents(item, trackingNumber.getId()), true, previousTrackStatus);
+    }
+
+    /**
+     * 批量保存同步结果
+     * 内容未变化的运单只更新同步时间，不写主信息、不动事件、不清缓存；
+     * 有变化的运单物流事件按指纹增量插入（已存在的事件不再删除重插）
+     *
+     * @return 有变化的运单数
+     */
+    @Transactional(rollbackFor = Exception.class)
+    public int saveSyncResults(List<SyncMergeResult> results) {
+        List<SyncMergeResult> changed = new ArrayList<>();
+        List<TrackingNumber> unchanged = new ArrayList<>();
+        for (SyncMergeResult result : results) {
+            if (result.isTrackingChanged()) {
+                changed.add(result);
+            } else {
+                unchanged.add(result.getTrackingNumber());
+            }
+        }
+
+        if (!unchanged.isEmpty()) {
+            trackingNumberMapper.updateSyncScheduleBatch(unchanged);
+        }
+        if (changed.isEmpty()) {
+            log.debug("Saved sync results: 0 changed, {} unchanged", unchanged.size());
+            return 0;
+        }
+
+        // 加载已有事件指纹，筛选出新事件
+        List<Long> changedIds = changed.stream()
+                .map(result -> result.getTrackingNumber().getId())
+                .collect(Collectors.toList());
+        Map<Long, Set<String>> existingFingerprints = trackingEventMapper.selectFingerprintsByTrackingIds(changedIds)
+                .stream()
+                .collect(Collectors.groupingBy(TrackingEvent::getTrackingId,
+                        Collectors.mapping(TrackingEvent::getEventFingerprint, Collectors.toSet())));
+
+        List<TrackingEvent> newEvents = new ArrayList<>();
+        for (SyncMergeResult result : changed) {
+            Set<String> seen = new HashSet<>(existingFingerprints.getOrDefault(
+                    result.getTrackingNumber().getId(), Collections.emptySet()));
+            for (TrackingEvent event : result.getEvents()) {
+                if (seen.add(event.getEventFingerprint())) {
+                    newEvents.add(event);
+                }
+            }
+        }
+
+        // 首次签收/异常的运单计入承运商时效统计（须在写回状态之前，先抢占状态变化再计数）
+        carrierPerformanceService.recordTransitions(changed);
+
+        trackingNumberMapper.updateSyncResultBatch(changed.stream()
+                .map(SyncMergeResult::getTrackingNumber)
+                .collect(Collectors.toList()));
+        if (!newEvents.isEmpty()) {
+            // 并发同步同一运单时依赖唯一约束去重
+            trackingEventMapper.insertIgnoreBatch(newEvents);
+        }
+
+        // 清除缓存
+        trackingCacheService.evict(changedIds);
+        log.debug("Saved sync results: {} changed, {} unchanged, {} new events",
+                changed.size(), unchanged.size(), newEvents.size());
+        return changed.size();
+    }
+
     /**
      * 转换17Track状态码为系统状态
      */
@@ -406,9 +581,7 @@ public class TrackingService {
         }
 
         // 清除缓存
-        String cacheKey = TRACKING_CACHE_PREFIX + id;
-        redisTemplate.delete(cacheKey);
-        log.debug("Cache invalidated for tracking: {}", id);
+        trackingCacheService.evict(id);
 
         log.info("Remarks updated successfully for tracking number: {}", id);
         return getById(id);
@@ -430,9 +603,7 @@ public class TrackingService {
         trackingNumberMapper.deleteById(id);
 
         // 清除缓存
-        String cacheKey = TRACKING_CACHE_PREFIX + id;
-        redisTemplate.delete(cacheKey);
-        log.debug("Cache invalidated for tracking: {}", id);
+        trackingCacheService.evict(id);
 
         log.info("Tracking number soft deleted successfully: {}", id);
     }
@@ -449,24 +620,40 @@ public class TrackingService {
             trackingNumberMapper.deleteBatch(ids);
 
             // 清除缓存
-            for (Long id : ids) {
-                String cacheKey = TRACKING_CACHE_PREFIX + id;
-                redisTemplate.delete(cacheKey);
-            }
+            trackingCacheService.evict(ids);
         }
 
         log.info("Batch soft delete completed: {}", ids.size());
     }
 
+    /**
+     * 批量导入进度监听器
+     */
+    public interface ImportProgressListener {
+        /**
+         * 一批运单处理完成（可能在多个线程中并发回调）
+         *
+         * @param processed  本批处理的运单数
+         * @param registered 其中注册成功的运单数
+         */
+        void onProgress(int processed, int registered);
+    }
+
     /**
      * 批量导入运单
      */
-    @Transactional(rollbackFor = Exception.class)
     public BatchImportResult batchImport(BatchImportRequest request) {
+        return batchImport(request, null);
+    }
+
+    /**
+     * 批量导入运单（带进度回调）
+     * 17Track注册按每40个一组并行执行（受令牌桶限流），仅最终批量写库时开启事务
+     */
+    public BatchImportResult batchImport(BatchImportRequest request, ImportProgressListener listener) {
         log.info("Batch importing tracking numbers: {}", request.getItems().size());
 
         int total = request.getItems().size();
-        int success = 0;
         int failed = 0;
 
         // P1优化：批量检查重复
@@ -475,143 +662,244 @@ public class TrackingService {
                 .collect(Collectors.toList());
 
         List<TrackingNumber> existingTrackings = trackingNumberMapper.selectByTrackingNumbers(trackingNumbersToCheck);
-        java.util.Set<String> existingNumbers = existingTrackings.stream()
+        Set<String> existingNumbers = existingTrackings.stream()
                 .map(TrackingNumber::getTrackingNumber)
                 .collect(Collectors.toSet());
 
-        // P1优化：批量处理
-        List<TrackingNumber> trackingNumbersToInsert = new java.util.ArrayList<>();
-        List<Parcel> parcelsToInsert = new java.util.ArrayList<>();
-
+        List<BatchImportItem> itemsToRegister = new ArrayList<>();
         for (BatchImportItem item : request.getItems()) {
-            try {
-                // 跳过已存在的运单
-                if (existingNumbers.contains(item.getTrackingNumber())) {
-                    log.warn("Tracking number already exists, skipping: {}", item.getTrackingNumber());
-                    failed++;
-                    continue;
-                }
+            // 跳过已存在的运单
+            if (existingNumbers.contains(item.getTrackingNumber())) {
+                log.warn("Tracking number already exists, skipping: {}", item.getTrackingNumber());
+                failed++;
+                continue;
+            }
+            itemsToRegister.add(item);
+        }
+        if (listener != null && failed > 0) {
+            listener.onProgress(failed, 0);
+        }
 
-                String actualCarrierCode = item.getCarrierCode();
-                String actualCarrierName = null;
-                Integer carrierId = null;
-
-                // 注意：17Track API调用保持串行，因为需要实时结果
-                // 可选优化：使用CompletableFuture并行调用，但需要处理限流
-                try {
-                    Track17RegisterResponse registerResponse = track17Service.registerTracking(
-                            item.getTrackingNumber(),
-                            item.getCarrierCode());
-
-                    // 检查运单号是否被拒绝（无效）
-                    if (registerResponse != null && registerResponse.getData() != null
-                            && registerResponse.getData().getRejected() != null
-                            && !registerResponse.getData().getRejected().isEmpty()) {
-
-                        Track17RegisterResponse.Track17RegisterData.RejectedItem rejectedItem = registerResponse
-                                .getData().getRejected().get(0);
-                        String errorMsg = rejectedItem.getError() != null
-                                ? rejectedItem.getError().getMessage()
-                                : "运单号无效";
-
-                        log.warn("Tracking number rejected by 17Track: {} - {}", item.getTrackingNumber(), errorMsg);
-                        failed++;
-                        continue; // 跳过无效运单号
-                    }
+        // 按40个一组并行注册到17Track
+        List<CompletableFuture<List<RegisteredItem>>> futures = new ArrayList<>();
+        for (int i = 0; i < itemsToRegister.size(); i += TRACK17_BATCH_SIZE) {
+            List<BatchImportItem> chunk = itemsToRegister.subList(i,
+                    Math.min(i + TRACK17_BATCH_SIZE, itemsToRegister.size()));
+            CompletableFuture<List<RegisteredItem>> future = CompletableFuture
+                    .supplyAsync(() -> registerChunk(chunk), track17Executor);
+            if (listener != null) {
+                future = future.thenApply(registered -> {
+                    listener.onProgress(chunk.size(), registered.size());
+                    return registered;
+                });
+            }
+            futures.add(future);
+        }
+
+        List<RegisteredItem> registeredItems = new ArrayList<>();
+        for (CompletableFuture<List<RegisteredItem>> future : futures) {
+            registeredItems.addAll(future.join());
+        }
+        failed += itemsToRegister.size() - registeredItems.size();
+
+        // 仅写库阶段开启事务
+        Integer inserted = transactionTemplate.execute(status -> saveImportedItems(registeredItems));
+        int success = inserted != null ? inserted : 0;
+        failed += registeredItems.size() - success;
+
+        String message = String.format("导入完成: 成功 %d, 失败 %d", success, failed);
+        log.info("Batch import completed: total={}, success={}, failed={}", total, success, failed);
 
-                    if (registerResponse != null && registerResponse.getData() != null
-                            && registerResponse.getData().getAccepted() != null
-                            && !registerResponse.getData().getAccepted().isEmpty()) {
+        return new BatchImportResult(total, success, failed, message);
+    }
+
+    /**
+     * 注册一组（不超过40个）运单到17Track，返回注册成功的运单
+     * 注册请求失败时整组视为失败
+     */
+    private List<RegisteredItem> registerChunk(List<BatchImportItem> chunk) {
+        // 当日注册额度不足时不再发起注册
+        if (track17QuotaService.remainingRegistrations() < chunk.size()) {
+            log.warn("17Track daily register quota exhausted, skipping {} tracking numbers", chunk.size());
+            return Collections.emptyList();
+        }
 
-                        Track17RegisterResponse.Track17RegisterData.AcceptedItem acceptedItem = registerResponse
-                                .getData().getAccepted().get(0);
-                        carrierId = acceptedItem.getCarrier();
+        List<Track17RegisterRequest> requests = chunk.stream()
+                .map(item -> new Track17RegisterRequest(item.getTrackingNumber(), item.getCarrierCode()))
+                .collect(Collectors.toList());
 
-                        if (StringUtils.isBlank(actualCarrierCode) && carrierId != null) {
-                            actualCarrierCode = convertCarrierIdToCode(carrierId);
-                            log.debug("17Track auto-detected carrier for {}: {} (ID: {})",
-                                    item.getTrackingNumber(), actualCarrierCode, carrierId);
-                        }
+        Track17RegisterResponse registerResponse;
+        try {
+            registerResponse = track17Service.registerTrackingBatch(requests);
+        } catch (Exception e) {
+            log.error("Failed to register {} tracking numbers to 17Track: {}", chunk.size(), e.getMessage());
+            return Collections.emptyList();
+        }
+
+        Map<String, Integer> acceptedCarriers = new HashMap<>();
+        if (registerResponse != null && registerResponse.getData() != null) {
+            Track17RegisterResponse.Track17RegisterData data = registerResponse.getData();
+            // 检查运单号是否被拒绝（无效）
+            if (data.getRejected() != null) {
+                for (Track17RegisterResponse.Track17RegisterData.RejectedItem rejectedItem : data.getRejected()) {
+                    // 已在17Track注册（如上次注册成功但响应超时）：视为注册成功，继续写库
+                    if (rejectedItem.getError() != null
+                            && Integer.valueOf(TRACK17_ALREADY_REGISTERED).equals(rejectedItem.getError().getCode())) {
+                        log.info("Tracking number already registered in 17Track, importing: {}", rejectedItem.getNumber());
+                        acceptedCarriers.put(rejectedItem.getNumber(), rejectedItem.getCarrier());
+                        continue;
                     }
+                    String errorMsg = rejectedItem.getError() != null
+                            ? rejectedItem.getError().getMessage()
+                            : "运单号无效";
+                    log.warn("Tracking number rejected by 17Track: {} - {}", rejectedItem.getNumber(), errorMsg);
+                }
+            }
+            if (data.getAccepted() != null) {
+                for (Track17RegisterResponse.Track17RegisterData.AcceptedItem acceptedItem : data.getAccepted()) {
+                    acceptedCarriers.put(acceptedItem.getNumber(), acceptedItem.getCarrier());
+                }
+            }
+        }
 
-                    try {
-                        Track17QueryResponse queryResponse = track17Service.queryTracking(
-                                item.getTrackingNumber(),
-                                item.getCarrierCode());
-
-                        if (queryResponse != null && queryResponse.getData() != null
-                                && queryResponse.getData().getAccepted() != null
-                                && !queryResponse.getData().getAccepted().isEmpty()) {
-
-                            Track17QueryResponse.Track17Data.AcceptedItem queryItem = queryResponse.getData()
-                                    .getAccepted().get(0);
-                            if (queryItem.getTrack() != null) {
-                                actualCarrierName = queryItem.getTrack().getW1();
-                            }
-                        }
-                    } catch (Exception e) {
-                        log.debug("Query tracking info not available yet for {}: {}",
-                                item.getTrackingNumber(), e.getMessage());
+        if (acceptedCarriers.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        // 批量查询承运商名称（新运单可能尚无数据，失败不影响导入）
+        Map<String, String> carrierNames = new HashMap<>();
+        try {
+            List<Track17RegisterRequest> queryRequests = requests.stream()
+                    .filter(r -> acceptedCarriers.containsKey(r.getNumber()))
+                    .collect(Collectors.toList());
+            Track17QueryResponse queryResponse = track17Service.queryTrackingBatch(queryRequests);
+            if (queryResponse != null && queryResponse.getData() != null
+                    && queryResponse.getData().getAccepted() != null) {
+                for (Track17QueryResponse.Track17Data.AcceptedItem queryItem : queryResponse.getData().getAccepted()) {
+                    if (queryItem.getTrack() != null) {
+                        carrierNames.put(queryItem.getNumber(), queryItem.getTrack().getW1());
                     }
-                } catch (Exception e) {
-                    log.error("Failed to register tracking to 17Track for {}: {}", item.getTrackingNumber(),
-                            e.getMessage());
-                    failed++;
-                    continue; // 跳过注册失败的运单号
                 }
+            }
+        } catch (Exception e) {
+            log.debug("Query tracking info not available yet for {} numbers: {}",
+                    acceptedCarriers.size(), e.getMessage());
+        }
 
-                // 创建包裹对象
-                Parcel parcel = new Parcel();
-                parcel.setCarrierCode(actualCarrierCode);
-                parcel.setCarrierName(actualCarrierName);
-                parcel.setStatus("in_transit");
-                parcelMapper.insert(parcel); // 包裹仍需逐个插入以获取ID
+        List<RegisteredItem> registered = new ArrayList<>();
+        for (BatchImportItem item : chunk) {
+            if (!acceptedCarriers.containsKey(item.getTrackingNumber())) {
+                continue;
+            }
+            String actualCarrierCode = item.getCarrierCode();
+            Integer carrierId = acceptedCarriers.get(item.getTrackingNumber());
+            if (StringUtils.isBlank(actualCarrierCode) && carrierId != null) {
+                actualCarrierCode = convertCarrierIdToCode(carrierId);
+                log.debug("17Track auto-detected carrier for {}: {} (ID: {})",
+                        item.getTrackingNumber(), actualCarrierCode, carrierId);
+            }
+            registered.add(new RegisteredItem(item.getTrackingNumber(), actualCarrierCode,
+                    carrierNames.get(item.getTrackingNumber()), item.getOrderId(), item.getSource()));
+        }
+        return registered;
+    }
+
+    /**
+     * 保存已注册的运单（在事务内执行）
+     * 包裹按批多行插入并回填ID，再在内存中与运单一一配对后批量插入运单；
+     * 关联订单的运单复用该订单已有的包裹（同一订单的多个运单共用一个包裹）
+     *
+     * @return 成功写入的运单数量
+     */
+    private int saveImportedItems(List<RegisteredItem> registeredItems) {
+        int success = 0;
+        int batchSize = 500;
+
+        for (int i = 0; i < registeredItems.size(); i += batchSize) {
+            int end = Math.min(i + batchSize, registeredItems.size());
+            List<RegisteredItem> batch = registeredItems.subList(i, end);
+
+            // 批量查询关联订单已有的包裹
+            Map<Long, Parcel> orderParcels = new HashMap<>();
+            List<Long> orderIds = batch.stream()
+                    .map(RegisteredItem::getOrderId)
+                    .filter(Objects::nonNull)
+                    .distinct()
+                    .collect(Collectors.toList());
+            if (!orderIds.isEmpty()) {
+                for (Parcel parcel : parcelMapper.selectByOrderIds(orderIds)) {
+                    orderParcels.putIfAbsent(parcel.getOrderId(), parcel);
+                }
+            }
 
-                // 创建运单对象
+            // 创建包裹对象（parcels与batch按下标一一对应）
+            List<Parcel> parcels = new ArrayList<>(batch.size());
+            List<Parcel> newParcels = new ArrayList<>();
+            for (RegisteredItem item : batch) {
+                Parcel parcel = item.getOrderId() != null ? orderParcels.get(item.getOrderId()) : null;
+                if (parcel == null) {
+                    parcel = new Parcel();
+                    parcel.setOrderId(item.getOrderId());
+                    parcel.setCarrierCode(item.getCarrierCode());
+                    parcel.setCarrierName(item.getCarrierName());
+                    parcel.setStatus("in_transit");
+                    newParcels.add(parcel);
+                    if (item.getOrderId() != null) {
+                        orderParcels.put(item.getOrderId(), parcel);
+                    }
+                }
+                parcels.add(parcel);
+            }
+            if (!newParcels.isEmpty()) {
+                parcelMapper.insertBatch(newParcels);
+            }
+
+            // 创建运单对象（按顺序与包裹配对）
+            List<TrackingNumber> trackingNumbers = new ArrayList<>(batch.size());
+            for (int j = 0; j < batch.size(); j++) {
+                RegisteredItem item = batch.get(j);
                 TrackingNumber trackingNumber = new TrackingNumber();
-                trackingNumber.setParcelId(parcel.getId());
+                trackingNumber.setParcelId(parcels.get(j).getId());
                 trackingNumber.setTrackingNumber(item.getTrackingNumber());
-                trackingNumber.setCarrierCode(actualCarrierCode);
-                trackingNumber.setSource("batch_import");
+                trackingNumber.setCarrierCode(item.getCarrierCode());
+                trackingNumber.setSource(StringUtils.isNotBlank(item.getSource()) ? item.getSource() : "batch_import");
                 trackingNumber.setTrackStatus("InfoReceived");
-
-                trackingNumbersToInsert.add(trackingNumber);
-                success++;
-            } catch (Exception e) {
-                log.error("Failed to prepare tracking number: {}", item.getTrackingNumber(), e);
-                failed++;
+                trackingNumber.setNextSyncAt(LocalDateTime.now());
+                trackingNumbers.add(trackingNumber);
             }
-        }
 
-        // P1优化：批量插入运单（每500条一批）
-        if (!trackingNumbersToInsert.isEmpty()) {
-            int batchSize = 500;
-            for (int i = 0; i < trackingNumbersToInsert.size(); i += batchSize) {
-                int end = Math.min(i + batchSize, trackingNumbersToInsert.size());
-                List<TrackingNumber> batch = trackingNumbersToInsert.subList(i, end);
-                try {
-                    trackingNumberMapper.insertBatch(batch);
-                    log.debug("Batch inserted {} tracking numbers ({}-{})", batch.size(), i, end);
-                } catch (Exception e) {
-                    log.error("Failed to batch insert tracking numbers: {}-{}", i, end, e);
-                    // 批量失败时回退到逐条插入
-                    for (TrackingNumber tn : batch) {
-                        try {
-                            trackingNumberMapper.insert(tn);
-                        } catch (Exception ex) {
-                            log.error("Failed to insert tracking number: {}", tn.getTrackingNumber(), ex);
-                            success--;
-                            failed++;
-                        }
+            // P1优化：批量插入运单
+            try {
+                trackingNumberMapper.insertBatch(trackingNumbers);
+                success += trackingNumbers.size();
+                log.debug("Batch inserted {} parcels and tracking numbers ({}-{})", batch.size(), i, end);
+            } catch (Exception e) {
+                log.error("Failed to batch insert tracking numbers: {}-{}", i, end, e);
+                // 批量失败时回退到逐条插入
+                for (TrackingNumber tn : trackingNumbers) {
+                    try {
+                        trackingNumberMapper.insert(tn);
+                        success++;
+                    } catch (Exception ex) {
+                        log.error("Failed to insert tracking number: {}", tn.getTrackingNumber(), ex);
                     }
                 }
             }
         }
+        return success;
+    }
 
-        String message = String.format("导入完成: 成功 %d, 失败 %d", success, failed);
-        log.info("Batch import completed: total={}, success={}, failed={}", total, success, failed);
-
-        return new BatchImportResult(total, success, failed, message);
+    /**
+     * 17Track注册成功的导入项
+     */
+    @Data
+    @AllArgsConstructor
+    private static class RegisteredItem {
+        private String trackingNumber;
+        private String carrierCode;
+        private String carrierName;
+        private Long orderId;
+        private String source;
     }
 
     /**
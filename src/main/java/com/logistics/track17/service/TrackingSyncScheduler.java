@@ -0,0 +1,128 @@
+package com.logistics.track17.service;
+
+import com.logistics.track17.entity.TrackingNumber;
+import com.logistics.track17.mapper.TrackingNumberMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * 运单自动同步定时调度器
+ * 按next_sync_at分页认领到期运单并通过批量查询接口刷新，下次同步时间由TrackingSyncPolicy根据运单状态计算
+ */
+@Service
+@Slf4j
+public class TrackingSyncScheduler {
+
+    private static final String SYNC_LOCK_KEY = "tracking:sync:lock";
+
+    private final TrackingNumberMapper trackingNumberMapper;
+    private final TrackingBulkSyncService bulkSyncService;
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final Track17QuotaService quotaService;
+
+    @Value("${tracking.sync.enabled:true}")
+    private boolean enabled;
+
+    @Value("${tracking.sync.page-size:200}")
+    private int pageSize;
+
+    @Value("${tracking.sync.max-per-run:2000}")
+    private int maxPerRun;
+
+    @Value("${tracking.sync.lease-minutes:30}")
+    private int leaseMinutes;
+
+    private final String nodeId = UUID.randomUUID().toString();
+
+    public TrackingSyncScheduler(TrackingNumberMapper trackingNumberMapper,
+            TrackingBulkSyncService bulkSyncService,
+            RedisTemplate<String, Object> redisTemplate,
+            Track17QuotaService quotaService) {
+        this.trackingNumberMapper = trackingNumberMapper;
+        this.bulkSyncService = bulkSyncService;
+        this.redisTemplate = redisTemplate;
+        this.quotaService = quotaService;
+    }
+
+    /**
+     * 定时同步到期运单（默认每分钟）
+     * 多实例部署时通过Redis锁保证同一时刻只有一个节点执行
+     */
+    @Scheduled(fixedDelayString = "${tracking.sync.interval:60000}", initialDelay = 90000)
+    public void syncDueTrackings() {
+        if (!enabled) {
+            return;
+        }
+
+        Boolean locked = redisTemplate.opsForValue().setIfAbsent(SYNC_LOCK_KEY, nodeId,
+                leaseMinutes, TimeUnit.MINUTES);
+        if (!Boolean.TRUE.equals(locked)) {
+            log.debug("运单自动同步已在其他节点执行，跳过");
+            return;
+        }
+
+        int processed = 0;
+        int success = 0;
+        try {
+            while (processed < maxPerRun) {
+                // 当日查询额度用完时停止，剩余运单保持到期状态，次日继续
+                long remainingQuota = quotaService.remainingQueries();
+                if (remainingQuota <= 0) {
+                    log.warn("17Track当日查询额度已用完，暂停运单自动同步");
+                    break;
+                }
+
+                LocalDateTime now = LocalDateTime.now();
+                List<TrackingNumber> due = trackingNumberMapper.selectDueForSync(now,
+                        (int) Math.min(Math.min(pageSize, maxPerRun - processed), remainingQuota));
+                if (due.isEmpty()) {
+                    break;
+                }
+
+                // 先认领（推迟next_sync_at），同步失败的运单在租约到期后自动重试
+                // 租约到期时间取整到秒，与DATETIME列精度一致，便于回查本次认领成功的运单
+                List<Long> ids = due.stream().map(TrackingNumber::getId).collect(Collectors.toList());
+                LocalDateTime leaseUntil = now.plusMinutes(leaseMinutes).truncatedTo(ChronoUnit.SECONDS);
+                int leased = trackingNumberMapper.leaseForSync(ids, now, leaseUntil);
+
+                // 部分运单已被其他节点认领（锁过期后并发执行）时，只同步本次认领成功的
+                List<TrackingNumber> claimed = due;
+                if (leased < ids.size()) {
+                    Set<Long> leasedIds = new HashSet<>(trackingNumberMapper.selectLeasedIds(ids, leaseUntil));
+                    claimed = due.stream()
+                            .filter(tn -> leasedIds.contains(tn.getId()))
+                            .collect(Collectors.toList());
+                    log.warn("运单自动同步: {} 个运单已被其他节点认领，跳过", due.size() - claimed.size());
+                }
+                if (!claimed.isEmpty()) {
+                    success += bulkSyncService.syncBatch(claimed);
+                }
+
+                processed += claimed.size();
+                if (due.size() < pageSize) {
+                    break;
+                }
+            }
+        } finally {
+            if (nodeId.equals(redisTemplate.opsForValue().get(SYNC_LOCK_KEY))) {
+                redisTemplate.delete(SYNC_LOCK_KEY);
+            }
+        }
+
+        if (processed > 0) {
+            log.info("运单自动同步完成: 处理 {}, 成功 {}, 失败 {}", processed, success, processed - success);
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.logistics.track17.util;
+
+import com.logistics.track17.entity.Carrier;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * 承运商内存查找表（不可变）
+ * 按17Track carrier ID排序存放在int数组中二分查找，避免装箱；同时建立carrier code索引。
+ * 承运商数据变更时整体重建后替换引用，读取无需加锁
+ */
+public final class CarrierLookup {
+
+    public static final CarrierLookup EMPTY = new CarrierLookup(new int[0], new Carrier[0], Collections.emptyMap());
+
+    private final int[] carrierIds;
+    private final Carrier[] carriers;
+    private final Map<String, Carrier> byCode;
+
+    private CarrierLookup(int[] carrierIds, Carrier[] carriers, Map<String, Carrier> byCode) {
+        this.carrierIds = carrierIds;
+        this.carriers = carriers;
+        this.byCode = byCode;
+    }
+
+    /**
+     * 根据承运商列表构建查找表（carrier ID或code重复时保留第一条）
+     */
+    public static CarrierLookup of(List<Carrier> source) {
+        Carrier[] sorted = source.stream()
+                .filter(Objects::nonNull)
+                .filter(carrier -> carrier.getCarrierId() != null)
+                .sorted(Comparator.comparingInt(Carrier::getCarrierId))
+                .toArray(Carrier[]::new);
+
+        int[] ids = new int[sorted.length];
+        Carrier[] carriers = new Carrier[sorted.length];
+        Map<String, Carrier> byCode = new HashMap<>(sorted.length * 2);
+        int size = 0;
+        for (Carrier carrier : sorted) {
+            int carrierId = carrier.getCarrierId();
+            if (size > 0 && ids[size - 1] == carrierId) {
+                continue;
+            }
+            ids[size] = carrierId;
+            carriers[size] = carrier;
+            size++;
+            if (carrier.getCarrierCode() != null) {
+                byCode.putIfAbsent(carrier.getCarrierCode(), carrier);
+            }
+        }
+
+        return new CarrierLookup(Arrays.copyOf(ids, size), Arrays.copyOf(carriers, size),
+                Collections.unmodifiableMap(byCode));
+    }
+
+    /**
+     * 根据17Track carrier ID查找，不存在返回null
+     */
+    public Carrier get(int carrierId) {
+        int index = Arrays.binarySearch(carrierIds, carrierId);
+        return index >= 0 ? carriers[index] : null;
+    }
+
+    /**
+     * 根据系统carrier code查找，不存在返回null
+     */
+    public Carrier getByCode(String carrierCode) {
+        return carrierCode == null ? null : byCode.get(carrierCode);
+    }
+
+    public int size() {
+        return carrierIds.length;
+    }
+}
@@ -0,0 +1,85 @@
+package com.logistics.track17.util;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 简单熔断器
+ * 连续失败达到阈值后熔断（OPEN），熔断期间直接拒绝请求；
+ * 熔断时间结束后放行一个试探请求（HALF_OPEN），成功则恢复，失败则重新熔断；
+ * 试探请求超过熔断时间仍未记录结果（如等待限流时被中断）视为丢失，再放行一个新的试探请求
+ */
+public class CircuitBreaker {
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final int failureThreshold;
+    private final long openNanos;
+
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long openedAt;
+    private boolean trialInFlight;
+    private long trialStartedAt;
+
+    /**
+     * @param failureThreshold 连续失败多少次后熔断
+     * @param openSeconds      熔断持续时间（秒）
+     */
+    public CircuitBreaker(int failureThreshold, long openSeconds) {
+        if (failureThreshold <= 0 || openSeconds <= 0) {
+            throw new IllegalArgumentException("failureThreshold and openSeconds must be positive");
+        }
+        this.failureThreshold = failureThreshold;
+        this.openNanos = TimeUnit.SECONDS.toNanos(openSeconds);
+    }
+
+    /**
+     * 是否允许发起请求
+     */
+    public synchronized boolean allowRequest() {
+        switch (state) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                if (System.nanoTime() - openedAt < openNanos) {
+                    return false;
+                }
+                state = State.HALF_OPEN;
+                startTrial();
+                return true;
+            default:
+                // 半开状态只放行一个试探请求
+                if (trialInFlight && System.nanoTime() - trialStartedAt < openNanos) {
+                    return false;
+                }
+                startTrial();
+                return true;
+        }
+    }
+
+    private void startTrial() {
+        trialInFlight = true;
+        trialStartedAt = System.nanoTime();
+    }
+
+    public synchronized void recordSuccess() {
+        state = State.CLOSED;
+        consecutiveFailures = 0;
+        trialInFlight = false;
+    }
+
+    public synchronized void recordFailure() {
+        consecutiveFailures++;
+        trialInFlight = false;
+        if (state == State.HALF_OPEN || consecutiveFailures >= failureThreshold) {
+            state = State.OPEN;
+            openedAt = System.nanoTime();
+        }
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+}
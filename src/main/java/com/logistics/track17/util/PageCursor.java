@@ -0,0 +1,49 @@
+package com.logistics.track17.util;
+
+import com.logistics.track17.exception.BusinessException;
+import lombok.Getter;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+
+/**
+ * 列表游标分页的位置（updated_at, id）
+ * 对外编码为不透明的Base64字符串，客户端原样回传即可
+ */
+@Getter
+public class PageCursor {
+
+    private final LocalDateTime updatedAt;
+    private final Long id;
+
+    public PageCursor(LocalDateTime updatedAt, Long id) {
+        this.updatedAt = updatedAt;
+        this.id = id;
+    }
+
+    /**
+     * 编码为游标字符串
+     */
+    public String encode() {
+        String raw = updatedAt + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 解析游标字符串，为空表示第一页
+     */
+    public static PageCursor decode(String cursor) {
+        if (cursor == null || cursor.isEmpty()) {
+            return null;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = raw.lastIndexOf('|');
+            return new PageCursor(LocalDateTime.parse(raw.substring(0, separator)),
+                    Long.parseLong(raw.substring(separator + 1)));
+        } catch (RuntimeException e) {
+            throw BusinessException.of(400, "无效的分页游标");
+        }
+    }
+}
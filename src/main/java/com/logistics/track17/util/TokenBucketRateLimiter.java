@@ -0,0 +1,62 @@
+package com.logistics.track17.util;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 令牌桶限流器
+ * 按固定速率补充令牌，允许不超过桶容量的突发请求；令牌不足时调用线程阻塞等待
+ */
+public class TokenBucketRateLimiter {
+
+    private final double permitsPerSecond;
+    private final double capacity;
+
+    private double tokens;
+    private long lastRefillNanos;
+
+    /**
+     * @param permitsPerSecond 每秒补充的令牌数
+     * @param burst            桶容量（允许的最大突发请求数）
+     */
+    public TokenBucketRateLimiter(double permitsPerSecond, int burst) {
+        if (permitsPerSecond <= 0 || burst <= 0) {
+            throw new IllegalArgumentException("permitsPerSecond and burst must be positive");
+        }
+        this.permitsPerSecond = permitsPerSecond;
+        this.capacity = burst;
+        this.tokens = burst;
+        this.lastRefillNanos = System.nanoTime();
+    }
+
+    /**
+     * 获取一个令牌，必要时阻塞等待
+     * 令牌允许透支：先到的请求先预约，后续请求依次排队，保证整体速率不超过限制
+     */
+    public void acquire() {
+        long waitNanos = reserve();
+        if (waitNanos > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(waitNanos);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for rate limiter", e);
+            }
+        }
+    }
+
+    /**
+     * 预约一个令牌但不阻塞，返回需要等待的纳秒数（异步调用方据此延迟发起请求）
+     */
+    public synchronized long reserve() {
+        refill();
+        tokens -= 1;
+        return tokens >= 0 ? 0 : (long) (-tokens / permitsPerSecond * TimeUnit.SECONDS.toNanos(1));
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        double elapsedSeconds = (now - lastRefillNanos) / (double) TimeUnit.SECONDS.toNanos(1);
+        tokens = Math.min(capacity, tokens + elapsedSeconds * permitsPerSecond);
+        lastRefillNanos = now;
+    }
+}
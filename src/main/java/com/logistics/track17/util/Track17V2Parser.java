@@ -4,7 +4,10 @@ import com.logistics.track17.dto.Track17V2Response;
 import com.logistics.track17.entity.TrackingEvent;
 import com.logistics.track17.entity.TrackingNumber;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.util.DigestUtils;
 
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
@@ -153,6 +156,9 @@ public class Track17V2Parser {
                     event.setPostalCode(trackEvent.getAddress().getPostalCode());
                 }
 
+                event.setEventFingerprint(fingerprint(trackEvent.getTimeIso(),
+                        trackEvent.getLocation(), trackEvent.getDescription()));
+
                 events.add(event);
             }
         }
@@ -160,6 +166,52 @@ public class Track17V2Parser {
         return events;
     }
 
+    /**
+     * 计算同步内容摘要：MD5(承运商|最新状态|子状态|最新事件时间|最新事件描述|最新事件地点|事件总数)
+     * 摘要与上次同步相同时视为无变化
+     */
+    public static String syncHash(Track17V2Response.AcceptedItem item) {
+        StringBuilder source = new StringBuilder();
+        source.append(item.getCarrier()).append('|');
+
+        Track17V2Response.TrackInfo trackInfo = item.getTrackInfo();
+        if (trackInfo != null) {
+            Track17V2Response.LatestStatus latestStatus = trackInfo.getLatestStatus();
+            if (latestStatus != null) {
+                source.append(latestStatus.getStatus()).append('|')
+                        .append(latestStatus.getSubStatus()).append('|');
+            }
+            Track17V2Response.TrackEvent latestEvent = trackInfo.getLatestEvent();
+            if (latestEvent != null) {
+                source.append(latestEvent.getTimeIso()).append('|')
+                        .append(latestEvent.getDescription()).append('|')
+                        .append(latestEvent.getLocation()).append('|');
+            }
+            int eventCount = 0;
+            if (trackInfo.getTracking() != null && trackInfo.getTracking().getProviders() != null) {
+                for (Track17V2Response.Provider provider : trackInfo.getTracking().getProviders()) {
+                    if (provider.getEvents() != null) {
+                        eventCount += provider.getEvents().size();
+                    }
+                }
+            }
+            source.append(eventCount);
+        }
+
+        return DigestUtils.md5DigestAsHex(source.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 计算事件指纹：MD5(时间|地点|描述)，null视为空串
+     * 需与V19迁移脚本中的回填算法保持一致
+     */
+    public static String fingerprint(String timeIso, String location, String description) {
+        String source = StringUtils.defaultString(timeIso) + "|"
+                + StringUtils.defaultString(location) + "|"
+                + StringUtils.defaultString(description);
+        return DigestUtils.md5DigestAsHex(source.getBytes(StandardCharsets.UTF_8));
+    }
+
     /**
      * 将状态文本转换为统一格式
      */
@@ -0,0 +1,86 @@
+package com.logistics.track17.util;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.logistics.track17.dto.Track17V2Response;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * 17Track V2查询响应流式解析器
+ * 直接从响应流逐个读取accepted中的运单并交给回调处理，不把整个响应体读成字符串或完整对象树；
+ * 返回的响应对象只包含code、msg和rejected（accepted为null）
+ */
+public class Track17V2StreamReader {
+
+    // 字段映射依赖DTO上的@JsonProperty
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+    private Track17V2StreamReader() {
+    }
+
+    /**
+     * 解析响应流
+     *
+     * @param in       响应体字节流（由调用方关闭）
+     * @param consumer 每解析出一个accepted运单回调一次
+     */
+    public static Track17V2Response read(InputStream in, Consumer<Track17V2Response.AcceptedItem> consumer)
+            throws IOException {
+        Track17V2Response response = new Track17V2Response();
+        Track17V2Response.Track17V2Data data = new Track17V2Response.Track17V2Data();
+        response.setData(data);
+
+        try (JsonParser parser = OBJECT_MAPPER.getFactory().createParser(in)) {
+            expect(parser.nextToken(), JsonToken.START_OBJECT);
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                JsonToken value = parser.nextToken();
+                if ("code".equals(field) && value != JsonToken.VALUE_NULL) {
+                    response.setCode(parser.getIntValue());
+                } else if ("msg".equals(field)) {
+                    response.setMsg(parser.getValueAsString());
+                } else if ("data".equals(field) && value == JsonToken.START_OBJECT) {
+                    readData(parser, data, consumer);
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+        return response;
+    }
+
+    private static void readData(JsonParser parser, Track17V2Response.Track17V2Data data,
+            Consumer<Track17V2Response.AcceptedItem> consumer) throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken value = parser.nextToken();
+            if ("accepted".equals(field) && value == JsonToken.START_ARRAY) {
+                while (parser.nextToken() == JsonToken.START_OBJECT) {
+                    consumer.accept(OBJECT_MAPPER.readValue(parser, Track17V2Response.AcceptedItem.class));
+                }
+            } else if ("rejected".equals(field) && value == JsonToken.START_ARRAY) {
+                List<Track17V2Response.RejectedItem> rejected = new ArrayList<>();
+                while (parser.nextToken() == JsonToken.START_OBJECT) {
+                    rejected.add(OBJECT_MAPPER.readValue(parser, Track17V2Response.RejectedItem.class));
+                }
+                data.setRejected(rejected);
+            } else {
+                parser.skipChildren();
+            }
+        }
+    }
+
+    private static void expect(JsonToken actual, JsonToken expected) throws IOException {
+        if (actual != expected) {
+            throw new IOException("Unexpected 17Track response token: " + actual + ", expected " + expected);
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.logistics.track17.util;
+
+import com.logistics.track17.entity.TrackingNumber;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+/**
+ * 运单自动同步间隔策略
+ * 根据运单状态和距离最后更新的天数计算下次同步时间：
+ * 运输中且近期有更新的运单频繁轮询，长时间无更新的运单逐步退避，已签收/已过期的运单不再轮询
+ */
+public class TrackingSyncPolicy {
+
+    /**
+     * 查询被17Track拒绝或同步失败时的重试间隔（小时）
+     */
+    private static final int RETRY_AFTER_FAILURE_HOURS = 24;
+
+    private TrackingSyncPolicy() {
+    }
+
+    /**
+     * 计算下次同步时间
+     *
+     * @return 下次同步时间，返回null表示不再自动同步
+     */
+    public static LocalDateTime nextSyncAt(TrackingNumber trackingNumber, LocalDateTime now) {
+        String status = trackingNumber.getTrackStatus();
+        if (status == null) {
+            return now.plusHours(6);
+        }
+
+        switch (status) {
+            case "Delivered":
+            case "Expired":
+                return null;
+            case "OutForDelivery":
+            case "AvailableForPickup":
+                return now.plusHours(2);
+            case "InTransit":
+                return now.plusHours(inTransitIntervalHours(daysSinceLastUpdate(trackingNumber, now)));
+            case "DeliveryFailure":
+                return now.plusHours(6);
+            case "Exception":
+                return now.plusHours(24);
+            default:
+                // NotFound / InfoReceived：刚注册的运单承运商可能尚未上网
+                int idleDays = daysSinceLastUpdate(trackingNumber, now);
+                return now.plusHours(idleDays > 14 ? 72 : 6);
+        }
+    }
+
+    /**
+     * 同步失败（被拒绝或接口异常）后的下次同步时间
+     */
+    public static LocalDateTime retryAfterFailure(LocalDateTime now) {
+        return now.plusHours(RETRY_AFTER_FAILURE_HOURS);
+    }
+
+    /**
+     * 运输中运单：近期有更新时4小时一次，停滞越久间隔越长
+     */
+    private static int inTransitIntervalHours(int idleDays) {
+        if (idleDays <= 2) {
+            return 4;
+        }
+        if (idleDays <= 7) {
+            return 12;
+        }
+        if (idleDays <= 30) {
+            return 24;
+        }
+        return 72;
+    }
+
+    /**
+     * 距离最后一条物流事件的天数（优先使用最新事件时间，其次使用17Track返回的时效数据）
+     */
+    private static int daysSinceLastUpdate(TrackingNumber trackingNumber, LocalDateTime now) {
+        if (trackingNumber.getLatestEventTime() != null) {
+            long days = Duration.between(trackingNumber.getLatestEventTime(), now).toDays();
+            return (int) Math.max(days, 0);
+        }
+        if (trackingNumber.getDaysAfterLastUpdate() != null) {
+            return trackingNumber.getDaysAfterLastUpdate();
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,20 @@
+-- ============================================================
+-- V18__tracking_auto_sync.sql
+-- 运单自动同步：为存量未终结运单初始化 next_sync_at
+--
+-- 说明：
+--   1. next_sync_at 已有索引 idx_next_sync，定时任务按 next_sync_at <= NOW() 范围扫描
+--   2. 已签收/已删除运单 next_sync_at 置 NULL，不进入同步队列
+-- ============================================================
+
+-- 未终结运单：立即进入同步队列，由 TrackingSyncPolicy 计算后续同步间隔
+UPDATE tracking_numbers
+SET next_sync_at = NOW(), updated_at = updated_at
+WHERE deleted_at IS NULL
+  AND next_sync_at IS NULL
+  AND (track_status IS NULL OR track_status NOT IN ('Delivered', 'Expired'));
+
+-- 已删除运单：移出同步队列
+UPDATE tracking_numbers
+SET next_sync_at = NULL, updated_at = updated_at
+WHERE deleted_at IS NOT NULL AND next_sync_at IS NOT NULL;
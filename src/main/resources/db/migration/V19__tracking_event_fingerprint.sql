@@ -0,0 +1,33 @@
+-- ============================================================
+-- V19__tracking_event_fingerprint.sql
+-- 物流事件增量合并：为 tracking_events 增加事件指纹并建立唯一约束
+-- 同步时仅 INSERT IGNORE 新事件，不再整体删除后重插
+--
+-- 指纹算法（需与 Track17V2Parser.fingerprint 保持一致）：
+--   MD5(time_iso | event_location | event_description)，NULL 视为空串
+--
+-- 执行前注意事项：
+--   1. 第3步会删除同一运单下指纹重复的事件（保留 id 最小的一条）
+--   2. 大表 ALTER 会锁表，建议在低峰期执行
+-- ============================================================
+
+-- 1. 新增指纹列
+ALTER TABLE tracking_events
+    ADD COLUMN event_fingerprint CHAR(32) NULL COMMENT '事件指纹(MD5: 时间|地点|描述)' AFTER time_iso;
+
+-- 2. 回填存量事件指纹
+UPDATE tracking_events
+SET event_fingerprint = MD5(CONCAT_WS('|',
+        IFNULL(time_iso, ''), IFNULL(event_location, ''), IFNULL(event_description, '')));
+
+-- 3. 清理重复事件
+DELETE e1 FROM tracking_events e1
+JOIN tracking_events e2
+  ON e1.tracking_id = e2.tracking_id
+ AND e1.event_fingerprint = e2.event_fingerprint
+ AND e1.id > e2.id;
+
+-- 4. 唯一约束（同时用于按运单加载已有指纹）
+ALTER TABLE tracking_events
+    MODIFY COLUMN event_fingerprint CHAR(32) NOT NULL COMMENT '事件指纹(MD5: 时间|地点|描述)',
+    ADD UNIQUE INDEX uk_tracking_fingerprint (tracking_id, event_fingerprint);
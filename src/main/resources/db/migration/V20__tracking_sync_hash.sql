@@ -0,0 +1,11 @@
+-- ============================================================
+-- V20__tracking_sync_hash.sql
+-- 同步增量检测：记录每个运单上次同步内容的摘要
+-- 摘要相同时同步只更新 last_sync_at / next_sync_at，不写主信息和事件
+--
+-- 说明：
+--   存量运单摘要为 NULL，下次同步时写入
+-- ============================================================
+
+ALTER TABLE tracking_numbers
+    ADD COLUMN sync_hash CHAR(32) NULL COMMENT '同步内容摘要(MD5: 最新状态|最新事件|事件数)' AFTER next_sync_at;
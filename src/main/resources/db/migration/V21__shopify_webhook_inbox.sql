@@ -0,0 +1,29 @@
+-- ============================================================
+-- V21__shopify_webhook_inbox.sql
+-- Shopify Webhook收件箱：验签后原始报文先落库并立即返回200，由后台按店铺顺序异步处理
+--
+-- 说明：
+--   1. webhook_id 取自 X-Shopify-Webhook-Id，唯一约束用于去重Shopify重复投递
+--   2. status: PENDING(待处理) / DONE(已处理) / DEAD(超过最大重试次数)
+--   3. 处理失败的事件按 next_attempt_at 退避重试，期间同一店铺的后续事件不被处理（保证店铺内顺序）
+--   4. 已处理事件保留若干天后由定时任务清理（保留期内的重复投递仍可去重）
+-- ============================================================
+
+CREATE TABLE IF NOT EXISTS shopify_webhook_inbox (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    webhook_id VARCHAR(64) NOT NULL COMMENT 'X-Shopify-Webhook-Id',
+    topic VARCHAR(64) NOT NULL COMMENT 'Webhook主题，如 orders/create',
+    shop_domain VARCHAR(255) NOT NULL COMMENT '店铺域名（X-Shopify-Shop-Domain）',
+    payload MEDIUMTEXT NOT NULL COMMENT '原始报文',
+    status VARCHAR(20) NOT NULL DEFAULT 'PENDING' COMMENT 'PENDING/DONE/DEAD',
+    attempts INT NOT NULL DEFAULT 0 COMMENT '已处理次数',
+    next_attempt_at DATETIME NOT NULL COMMENT '下次可处理时间',
+    last_error VARCHAR(500) COMMENT '最近一次处理错误',
+    received_at DATETIME NOT NULL COMMENT '接收时间',
+    processed_at DATETIME COMMENT '处理完成时间',
+
+    UNIQUE KEY uk_webhook_id (webhook_id),
+    INDEX idx_status_next_attempt (status, next_attempt_at),
+    INDEX idx_shop_status (shop_domain, status, id),
+    INDEX idx_processed_at (processed_at)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='Shopify Webhook收件箱';
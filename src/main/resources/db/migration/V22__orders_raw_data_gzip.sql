@@ -0,0 +1,11 @@
+-- ============================================================
+-- V22__orders_raw_data_gzip.sql
+-- 订单原始报文可选压缩存储
+--
+-- 说明：
+--   1. order.raw-data.compress=true 时原始报文gzip压缩后写入 raw_data_gzip，raw_data 置 NULL
+--   2. 默认不压缩，仍写入 raw_data(JSON)
+-- ============================================================
+
+ALTER TABLE orders
+    ADD COLUMN raw_data_gzip MEDIUMBLOB NULL COMMENT 'gzip压缩的完整订单JSON（开启压缩时使用）' AFTER raw_data;
@@ -0,0 +1,47 @@
+-- ============================================================
+-- V23__shop_daily_order_stats.sql
+-- 店铺每日订单汇总表：报表和首页统计按日期范围汇总本表，不再扫描 orders
+--
+-- 说明：
+--   1. 按 (店铺, 下单日期, 币种) 汇总订单数和金额，下单日期取 DATE(orders.created_at)
+--   2. 订单写入时增量维护（新订单、金额变化、支付状态变化按差值更新）
+--   3. 每晚重算最近几天的数据，修正增量维护可能产生的偏差
+--   4. 支付状态分组：
+--        paid     = paid / partially_paid / partially_refunded
+--        refunded = refunded / voided
+-- ============================================================
+
+CREATE TABLE IF NOT EXISTS shop_daily_order_stats (
+    shop_id BIGINT NOT NULL COMMENT '店铺ID',
+    stat_date DATE NOT NULL COMMENT '下单日期',
+    currency VARCHAR(10) NOT NULL COMMENT '币种',
+    order_count INT NOT NULL DEFAULT 0 COMMENT '订单数',
+    revenue DECIMAL(16,2) NOT NULL DEFAULT 0 COMMENT '订单总金额',
+    paid_order_count INT NOT NULL DEFAULT 0 COMMENT '已支付订单数',
+    paid_revenue DECIMAL(16,2) NOT NULL DEFAULT 0 COMMENT '已支付订单金额',
+    refunded_order_count INT NOT NULL DEFAULT 0 COMMENT '已退款/作废订单数',
+    refunded_revenue DECIMAL(16,2) NOT NULL DEFAULT 0 COMMENT '已退款/作废订单金额',
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+
+    PRIMARY KEY (shop_id, stat_date, currency),
+    INDEX idx_stat_date (stat_date)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='店铺每日订单汇总';
+
+-- 存量订单回填
+INSERT INTO shop_daily_order_stats (
+    shop_id, stat_date, currency, order_count, revenue,
+    paid_order_count, paid_revenue, refunded_order_count, refunded_revenue
+)
+SELECT
+    shop_id,
+    DATE(created_at),
+    currency,
+    COUNT(*),
+    COALESCE(SUM(total_price), 0),
+    SUM(CASE WHEN financial_status IN ('paid', 'partially_paid', 'partially_refunded') THEN 1 ELSE 0 END),
+    COALESCE(SUM(CASE WHEN financial_status IN ('paid', 'partially_paid', 'partially_refunded') THEN total_price ELSE 0 END), 0),
+    SUM(CASE WHEN financial_status IN ('refunded', 'voided') THEN 1 ELSE 0 END),
+    COALESCE(SUM(CASE WHEN financial_status IN ('refunded', 'voided') THEN total_price ELSE 0 END), 0)
+FROM orders
+WHERE created_at IS NOT NULL
+GROUP BY shop_id, DATE(created_at), currency;
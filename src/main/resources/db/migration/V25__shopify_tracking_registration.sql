@@ -0,0 +1,26 @@
+-- ============================================================
+-- V25__shopify_tracking_registration.sql
+-- Shopify发货运单待注册表：订单更新Webhook中的运单号先落库，由定时任务批量注册到17Track
+--
+-- 说明：
+--   1. tracking_number 唯一，同一运单号多次推送只保留一条；DEAD 的运单再次推送时重新置为 PENDING
+--   2. status: PENDING(待注册) / DONE(已注册或已存在) / DEAD(超过最大重试次数)
+--   3. 注册失败（17Track请求失败、额度不足等）按 next_attempt_at 指数退避重试
+--   4. 已注册的记录保留若干天后由定时任务清理
+-- ============================================================
+
+CREATE TABLE IF NOT EXISTS shopify_tracking_registration (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    tracking_number VARCHAR(255) NOT NULL COMMENT '运单号',
+    order_id BIGINT COMMENT '关联订单ID',
+    status VARCHAR(20) NOT NULL DEFAULT 'PENDING' COMMENT 'PENDING/DONE/DEAD',
+    attempts INT NOT NULL DEFAULT 0 COMMENT '已注册次数',
+    next_attempt_at DATETIME NOT NULL COMMENT '下次可注册时间',
+    last_error VARCHAR(500) COMMENT '最近一次注册错误',
+    created_at DATETIME NOT NULL COMMENT '入队时间',
+    processed_at DATETIME COMMENT '处理完成时间',
+
+    UNIQUE KEY uk_tracking_number (tracking_number),
+    INDEX idx_status_next_attempt (status, next_attempt_at),
+    INDEX idx_processed_at (processed_at)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='Shopify发货运单待注册';